@@ -0,0 +1,104 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-19 02:14:36
+ * @description CountBuffer - 计数的写后缓冲：内存中累加，定期分批调用写回函数落库
+ */
+package com.tiqs.common;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 累加只写内存，避免大量并发请求争用同一行的行锁；写回函数一般是一条 UPDATE ... CASE，
+ * 每批最多 {@value #BATCH_SIZE} 个ID，失败的批次放回缓冲区等待下次重试。应用关闭时写回剩余增量。
+ * <p>
+ * 子类声明为 Spring 组件，并覆盖 {@link #flush()} 加上各自的 {@code @Scheduled} 写回周期。
+ *
+ * @param <T> 带计数字段的实体，用于把尚未落库的增量合并到查询结果中
+ */
+@Slf4j
+public abstract class CountBuffer<T> {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final String name;
+    private final Consumer<Map<Long, Long>> writer;
+    private final Function<T, Long> idGetter;
+    private final Function<T, Integer> countGetter;
+    private final BiConsumer<T, Integer> countSetter;
+    private final PendingCounters counters = new PendingCounters();
+
+    /**
+     * @param name   计数名称，用于日志
+     * @param writer 写回函数，参数为 ID -> 增量
+     */
+    protected CountBuffer(String name, Consumer<Map<Long, Long>> writer, Function<T, Long> idGetter,
+                          Function<T, Integer> countGetter, BiConsumer<T, Integer> countSetter) {
+        this.name = name;
+        this.writer = writer;
+        this.idGetter = idGetter;
+        this.countGetter = countGetter;
+        this.countSetter = countSetter;
+    }
+
+    public void increment(Long id) {
+        counters.increment(id);
+    }
+
+    /**
+     * 将尚未落库的增量合并到查询结果中
+     */
+    public T merge(T entity) {
+        if (entity != null) {
+            long pending = counters.pending(idGetter.apply(entity));
+            if (pending > 0) {
+                Integer count = countGetter.apply(entity);
+                countSetter.accept(entity, (int) ((count != null ? count : 0) + pending));
+            }
+        }
+        return entity;
+    }
+
+    public List<T> merge(List<T> entities) {
+        entities.forEach(this::merge);
+        return entities;
+    }
+
+    public synchronized void flush() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> deltas = counters.drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            Map<Long, Long> batch = new HashMap<>();
+            for (Long id : ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()))) {
+                batch.put(id, deltas.get(id));
+            }
+            try {
+                writer.accept(batch);
+            } catch (Exception e) {
+                log.warn("写回{}失败，稍后重试 ids={}: {}", name, batch.size(), e.getMessage());
+                counters.restore(batch);
+            }
+        }
+        log.debug("写回{} ids={}", name, deltas.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
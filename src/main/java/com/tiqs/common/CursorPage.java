@@ -0,0 +1,51 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 14:36:52
+ * @description CursorPage - 基于游标（keyset）的分页结果
+ */
+package com.tiqs.common;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果
+ *
+ * @param <T> 数据类型
+ */
+@Data
+public class CursorPage<T> {
+    /**
+     * 当前页数据
+     */
+    private List<T> items;
+
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 根据多查询一条的结果构造分页：查询时 LIMIT pageSize + 1，多出的一条只用于判断是否还有下一页
+     *
+     * @param rows     查询结果，最多 pageSize + 1 条
+     * @param pageSize 每页条数
+     * @param cursorOf 由当前页最后一条数据生成下一页游标
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        CursorPage<T> page = new CursorPage<>();
+        boolean hasMore = rows.size() > pageSize;
+        List<T> items = hasMore ? rows.subList(0, pageSize) : rows;
+        page.setItems(items);
+        page.setHasMore(hasMore);
+        page.setNextCursor(hasMore ? cursorOf.apply(items.get(items.size() - 1)) : null);
+        return page;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-19 00:41:15
+ * @description DiscussionCursor - 讨论列表按 (置顶, 更新时间, id) 倒序分页的游标
+ */
+package com.tiqs.common;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 与 {@link PageCursor} 相同，只是排序键多了置顶标记：置顶讨论排在前面，翻过置顶部分后继续按更新时间倒序。
+ */
+public record DiscussionCursor(boolean pinned, LocalDateTime time, Long id) {
+
+    public String encode() {
+        String raw = (pinned ? 1 : 0) + "|" + time + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，为空时返回 null 表示从第一页开始
+     */
+    public static DiscussionCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3 || !("0".equals(parts[0]) || "1".equals(parts[0]))) {
+                throw BusinessException.of(400, "无效的分页游标");
+            }
+            return new DiscussionCursor("1".equals(parts[0]), LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw BusinessException.of(400, "无效的分页游标");
+        }
+    }
+}
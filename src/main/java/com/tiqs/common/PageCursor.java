@@ -0,0 +1,56 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 14:36:52
+ * @description PageCursor - 按 (时间, id) 倒序分页的游标
+ */
+package com.tiqs.common;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 游标记录当前页最后一条数据的排序键，下一页从该位置之后继续查询，
+ * 查询代价与翻到第几页无关。对客户端是不透明的 Base64URL 字符串。
+ */
+public record PageCursor(LocalDateTime time, Long id) {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public String encode() {
+        String raw = time + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，为空时返回 null 表示从第一页开始
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator <= 0) {
+                throw BusinessException.of(400, "无效的分页游标");
+            }
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw BusinessException.of(400, "无效的分页游标");
+        }
+    }
+
+    /**
+     * 将请求的每页条数限制在合理范围内
+     */
+    public static int pageSize(Integer pageSize) {
+        if (pageSize == null || pageSize <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+}
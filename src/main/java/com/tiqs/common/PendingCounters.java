@@ -0,0 +1,87 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 13:20:08
+ * @description PendingCounters - 按ID分段累加、定期批量落库的计数缓冲
+ */
+package com.tiqs.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每个ID一个 {@link LongAdder}，热点ID上的并发累加不会互相争用。
+ * <p>
+ * {@link #drain()} 通过记录已取出的累计值计算增量，不对 LongAdder 做 reset，
+ * 因此不会丢失 drain 期间的并发累加。一个周期内没有增量的ID会被移出映射以控制内存，
+ * 移出的计数器保留到下一次 drain 再读取一次，覆盖移除瞬间仍在进行的累加。
+ */
+public class PendingCounters {
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<Long, Counter> retired = new HashMap<>();
+
+    private static final class Counter {
+        private final LongAdder adder = new LongAdder();
+        private volatile long drained;
+
+        private long pending() {
+            return adder.sum() - drained;
+        }
+
+        private long take() {
+            long total = adder.sum();
+            long delta = total - drained;
+            drained = total;
+            return delta;
+        }
+    }
+
+    public void increment(Long id) {
+        counters.computeIfAbsent(id, k -> new Counter()).adder.increment();
+    }
+
+    /**
+     * 尚未落库的增量
+     */
+    public long pending(Long id) {
+        Counter counter = counters.get(id);
+        return counter != null ? counter.pending() : 0;
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty() && retired.isEmpty();
+    }
+
+    /**
+     * 取出全部增量，调用方需保证 drain / restore 串行执行
+     */
+    public Map<Long, Long> drain() {
+        Map<Long, Long> deltas = new HashMap<>();
+        retired.forEach((id, counter) -> {
+            long value = counter.take();
+            if (value != 0) {
+                deltas.merge(id, value, Long::sum);
+            }
+        });
+        retired.clear();
+
+        counters.forEach((id, counter) -> {
+            long value = counter.take();
+            if (value != 0) {
+                deltas.merge(id, value, Long::sum);
+            } else if (counters.remove(id, counter)) {
+                retired.put(id, counter);
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * 落库失败时放回增量，等待下次重试
+     */
+    public void restore(Map<Long, Long> deltas) {
+        deltas.forEach((id, value) -> counters.computeIfAbsent(id, k -> new Counter()).adder.add(value));
+    }
+}
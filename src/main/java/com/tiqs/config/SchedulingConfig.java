@@ -0,0 +1,14 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 10:05:31
+ * @description SchedulingConfig - 启用后台定时任务
+ */
+package com.tiqs.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -5,35 +5,66 @@
  */
 package com.tiqs.controller;
 
+import com.tiqs.auth.AuthContext;
 import com.tiqs.auth.AuthContextHolder;
 import com.tiqs.auth.RequireRole;
 import com.tiqs.auth.UserRole;
 import com.tiqs.common.ApiResponse;
+import com.tiqs.common.BusinessException;
+import com.tiqs.common.CursorPage;
+import com.tiqs.dto.CloudSearchHit;
+import com.tiqs.dto.CloudUploadSession;
 import com.tiqs.entity.CloudFile;
 import com.tiqs.entity.CloudFolder;
+import com.tiqs.entity.CloudScrubReport;
+import com.tiqs.service.CloudSearchService;
 import com.tiqs.service.CloudStorageService;
+import com.tiqs.storage.ContentSource;
+import com.tiqs.storage.DownloadBandwidthLimiter;
+import com.tiqs.storage.HotFileCache;
+import com.tiqs.storage.RangeDownloadWriter;
+import com.tiqs.storage.StorageScrubber;
+import com.tiqs.storage.StreamingMultipartReader;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/cloud")
 public class CloudStorageController {
 
-    private final CloudStorageService cloudStorageService;
+    /**
+     * 缩略图需要登录且按文件权限访问，只允许浏览器缓存；过期后凭 ETag（内容哈希）重新验证
+     */
+    private static final String THUMBNAIL_CACHE_CONTROL = "private, max-age=86400";
+    private static final long MAX_UPLOAD_BYTES = 100 * 1024 * 1024;
 
-    public CloudStorageController(CloudStorageService cloudStorageService) {
+    private final CloudStorageService cloudStorageService;
+    private final RangeDownloadWriter rangeDownloadWriter;
+    private final CloudSearchService cloudSearchService;
+    private final DownloadBandwidthLimiter bandwidthLimiter;
+    private final HotFileCache hotFileCache;
+    private final StorageScrubber storageScrubber;
+
+    public CloudStorageController(CloudStorageService cloudStorageService, RangeDownloadWriter rangeDownloadWriter,
+                                  CloudSearchService cloudSearchService, DownloadBandwidthLimiter bandwidthLimiter,
+                                  HotFileCache hotFileCache, StorageScrubber storageScrubber) {
         this.cloudStorageService = cloudStorageService;
+        this.rangeDownloadWriter = rangeDownloadWriter;
+        this.cloudSearchService = cloudSearchService;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.hotFileCache = hotFileCache;
+        this.storageScrubber = storageScrubber;
     }
 
     // --- File Endpoints ---
@@ -54,6 +85,94 @@ public class CloudStorageController {
         return ApiResponse.ok(cloudFile);
     }
 
+    /**
+     * 流式上传，不经过容器的 multipart 临时文件。表单字段须位于文件之前，且不能通过 @RequestParam 读取
+     */
+    @RequireRole(UserRole.TEACHER)
+    @PostMapping("/files/upload-stream")
+    public ApiResponse<CloudFile> uploadFileStream(HttpServletRequest request) throws IOException {
+        Long userId = AuthContextHolder.get().userId();
+        StreamingMultipartReader.FilePart part = StreamingMultipartReader.readFile(request, MAX_UPLOAD_BYTES);
+        Map<String, String> fields = part.fields();
+        Long classId = parseLong(fields.get("classId"), "classId");
+        if (classId == null) {
+            throw BusinessException.of(400, "缺少必需参数: classId");
+        }
+        Long folderId = parseLong(fields.get("folderId"), "folderId");
+        Boolean isPublic = !fields.containsKey("isPublic") || Boolean.parseBoolean(fields.get("isPublic"));
+        log.info("请求流式上传云盘文件 classId={} fileName={} userId={} folderId={}", classId, part.fileName(), userId, folderId);
+
+        CloudFile cloudFile = cloudStorageService.uploadFileStream(classId, userId, part.fileName(), part.content(),
+                fields.get("description"), isPublic, folderId);
+        return ApiResponse.ok(cloudFile);
+    }
+
+    @RequireRole(UserRole.TEACHER)
+    @PostMapping("/files/batch-upload")
+    public ApiResponse<CloudStorageService.BatchUploadResult> uploadFiles(
+            @RequestParam("classId") Long classId,
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam(value = "isPublic", defaultValue = "true") Boolean isPublic,
+            @RequestParam(value = "folderId", required = false) Long folderId) {
+
+        Long userId = AuthContextHolder.get().userId();
+        log.info("请求批量上传云盘文件 classId={} count={} userId={} folderId={}", classId, files.size(), userId, folderId);
+
+        return ApiResponse.ok(cloudStorageService.uploadFiles(classId, userId, files, description, isPublic, folderId));
+    }
+
+    @RequireRole(UserRole.TEACHER)
+    @PostMapping("/uploads")
+    public ApiResponse<CloudUploadSession> createUploadSession(
+            @RequestParam("classId") Long classId,
+            @RequestParam("fileName") String fileName,
+            @RequestParam("fileSize") Long fileSize,
+            @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam(value = "isPublic", defaultValue = "true") Boolean isPublic,
+            @RequestParam(value = "folderId", required = false) Long folderId) {
+
+        Long userId = AuthContextHolder.get().userId();
+        log.info("请求创建分片上传会话 classId={} fileName={} fileSize={} userId={}", classId, fileName, fileSize, userId);
+
+        CloudUploadSession session = cloudStorageService.createUploadSession(classId, userId, fileName, fileSize, chunkSize,
+                description, isPublic, folderId);
+        return ApiResponse.ok(session);
+    }
+
+    @GetMapping("/uploads/{sessionId}")
+    public ApiResponse<CloudUploadSession> getUploadSession(@PathVariable String sessionId) {
+        Long userId = AuthContextHolder.get().userId();
+        return ApiResponse.ok(cloudStorageService.getUploadSession(sessionId, userId));
+    }
+
+    @PutMapping("/uploads/{sessionId}/chunks/{index}")
+    public ApiResponse<Void> uploadChunk(
+            @PathVariable String sessionId,
+            @PathVariable Integer index,
+            HttpServletRequest request) throws IOException {
+
+        Long userId = AuthContextHolder.get().userId();
+        cloudStorageService.uploadChunk(sessionId, index, request.getInputStream(), userId);
+        return ApiResponse.ok(null);
+    }
+
+    @PostMapping("/uploads/{sessionId}/commit")
+    public ApiResponse<CloudFile> commitUploadSession(@PathVariable String sessionId) {
+        Long userId = AuthContextHolder.get().userId();
+        log.info("提交分片上传会话 sessionId={} userId={}", sessionId, userId);
+        return ApiResponse.ok(cloudStorageService.commitUploadSession(sessionId, userId));
+    }
+
+    @DeleteMapping("/uploads/{sessionId}")
+    public ApiResponse<Void> abortUploadSession(@PathVariable String sessionId) {
+        Long userId = AuthContextHolder.get().userId();
+        log.info("取消分片上传会话 sessionId={} userId={}", sessionId, userId);
+        cloudStorageService.abortUploadSession(sessionId, userId);
+        return ApiResponse.ok(null);
+    }
+
     @GetMapping("/files")
     public ApiResponse<List<CloudFile>> listFiles(
             @RequestParam("classId") Long classId,
@@ -77,6 +196,34 @@ public class CloudStorageController {
         return ApiResponse.ok(files);
     }
 
+    /**
+     * 带 pageSize 参数时按游标分页返回，不带时保持原有的全量列表返回
+     */
+    @GetMapping(value = "/files", params = "pageSize")
+    public ApiResponse<CursorPage<CloudFile>> listFilesPage(
+            @RequestParam("classId") Long classId,
+            @RequestParam(value = "fileType", required = false) String fileType,
+            @RequestParam(value = "uploaderId", required = false) Long uploaderId,
+            @RequestParam(value = "folderId", required = false) Long folderId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam("pageSize") Integer pageSize) {
+
+        log.debug("分页查询云盘文件列表 classId={} folderId={} cursor={} pageSize={}", classId, folderId, cursor, pageSize);
+        return ApiResponse.ok(cloudStorageService.listFilesPage(classId, folderId, uploaderId, fileType, cursor, pageSize));
+    }
+
+    @GetMapping("/search")
+    public ApiResponse<List<CloudSearchHit>> search(
+            @RequestParam("classId") Long classId,
+            @RequestParam("keyword") String keyword,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+
+        Long userId = AuthContextHolder.get().userId();
+        log.debug("搜索云盘 classId={} keyword={} type={} userId={}", classId, keyword, type, userId);
+        return ApiResponse.ok(cloudSearchService.search(classId, keyword, type, userId, limit));
+    }
+
     @GetMapping("/files/{id}")
     public ApiResponse<CloudFile> getFile(@PathVariable Long id) {
         log.debug("获取云盘文件详情 id={}", id);
@@ -107,22 +254,80 @@ public class CloudStorageController {
     }
 
     @GetMapping("/files/{id}/download")
-    public ResponseEntity<Resource> downloadFile(@PathVariable Long id) {
-        Long userId = AuthContextHolder.get().userId();
-        log.info("下载云盘文件 id={} userId={}", id, userId);
+    public void downloadFile(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AuthContext auth = AuthContextHolder.get();
+        log.info("下载云盘文件 id={} userId={} range={}", id, auth.userId(), request.getHeader(HttpHeaders.RANGE));
+
+        // 先占下载名额再计数，被限流拒绝的请求不计入下载次数
+        try (DownloadBandwidthLimiter.Lease lease = bandwidthLimiter.open(auth.userId(), auth.role() == UserRole.TEACHER)) {
+            CloudStorageService.CloudFileDownload download = cloudStorageService.downloadFile(id, auth.userId());
+            rangeDownloadWriter.write(request, response, lease.throttle(download.content()),
+                    download.file().getOriginalFileName());
+        }
+    }
 
-        CloudFile cloudFile = cloudStorageService.getFile(id);
-        byte[] fileContent = cloudStorageService.downloadFile(id, userId);
+    @PostMapping("/files/{id}/download-url")
+    public ApiResponse<CloudStorageService.DownloadUrl> createDownloadUrl(@PathVariable Long id) {
+        AuthContext auth = AuthContextHolder.get();
+        return ApiResponse.ok(cloudStorageService.createDownloadUrl(id, auth.userId(), auth.role() == UserRole.TEACHER));
+    }
+
+    /**
+     * 下载带宽整形的运行指标
+     */
+    @RequireRole(UserRole.TEACHER)
+    @GetMapping("/metrics/bandwidth")
+    public ApiResponse<DownloadBandwidthLimiter.BandwidthStats> getBandwidthStats() {
+        return ApiResponse.ok(bandwidthLimiter.stats());
+    }
+
+    /**
+     * 热门文件内存缓存的命中、未命中与淘汰计数
+     */
+    @RequireRole(UserRole.TEACHER)
+    @GetMapping("/metrics/hot-cache")
+    public ApiResponse<HotFileCache.CacheStats> getHotCacheStats() {
+        return ApiResponse.ok(hotFileCache.stats());
+    }
 
-        ByteArrayResource resource = new ByteArrayResource(fileContent);
+    /**
+     * 存储完整性巡检进度，报告数只统计当前教师所管理的班级
+     */
+    @RequireRole(UserRole.TEACHER)
+    @GetMapping("/scrub")
+    public ApiResponse<StorageScrubber.ScrubProgress> getScrubProgress() {
+        return ApiResponse.ok(storageScrubber.progress(AuthContextHolder.get().userId()));
+    }
 
-        String encodedFileName = URLEncoder.encode(cloudFile.getOriginalFileName(), StandardCharsets.UTF_8);
+    /**
+     * 当前教师所管理班级中巡检发现的缺失或内容损坏的文件，按最近发现时间倒序
+     */
+    @RequireRole(UserRole.TEACHER)
+    @GetMapping("/scrub/reports")
+    public ApiResponse<List<CloudScrubReport>> getScrubReports(@RequestParam(defaultValue = "50") int limit) {
+        if (limit <= 0 || limit > 200) {
+            throw BusinessException.of(400, "limit 取值范围为 1-200");
+        }
+        return ApiResponse.ok(storageScrubber.recentReports(AuthContextHolder.get().userId(), limit));
+    }
+
+    @GetMapping("/files/{id}/thumbnail")
+    public void getThumbnail(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long userId = AuthContextHolder.get().userId();
+
+        CloudStorageService.CloudFileDownload thumbnail = cloudStorageService.getThumbnail(id, userId);
+        ContentSource content = thumbnail.content();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, THUMBNAIL_CACHE_CONTROL);
+        if (new ServletWebRequest(request, response).checkNotModified(content.eTag(), content.lastModified())) {
+            return;
+        }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + encodedFileName + "\"; filename*=UTF-8''" + encodedFileName)
-                .body(resource);
+        long length = content.length();
+        response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+        response.setContentLengthLong(length);
+        if (!"HEAD".equalsIgnoreCase(request.getMethod())) {
+            content.transferTo(0, length, response.getOutputStream());
+        }
     }
 
     @GetMapping("/files/statistics")
@@ -192,6 +397,19 @@ public class CloudStorageController {
         return ApiResponse.ok(tree);
     }
 
+    @GetMapping("/folders/{id}/download.zip")
+    public void downloadFolderZip(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        AuthContext auth = AuthContextHolder.get();
+        log.info("打包下载文件夹 id={} userId={}", id, auth.userId());
+
+        CloudFolder folder = cloudStorageService.getFolder(id);
+        try (DownloadBandwidthLimiter.Lease lease = bandwidthLimiter.open(auth.userId(), auth.role() == UserRole.TEACHER)) {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, RangeDownloadWriter.attachment(folder.getName() + ".zip"));
+            cloudStorageService.writeFolderZip(folder, auth.userId(), lease.wrap(response.getOutputStream()));
+        }
+    }
+
     @PutMapping("/folders/{id}/rename")
     public ApiResponse<CloudFolder> renameFolder(
             @PathVariable Long id,
@@ -243,4 +461,15 @@ public class CloudStorageController {
         CloudStorageService.CloudFolderStatistics statistics = cloudStorageService.getFolderStatistics(classId);
         return ApiResponse.ok(statistics);
     }
+
+    private static Long parseLong(String value, String name) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw BusinessException.of(400, "参数格式错误: " + name);
+        }
+    }
 }
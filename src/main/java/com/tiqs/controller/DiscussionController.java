@@ -10,6 +10,8 @@ import com.tiqs.auth.RequireRole;
 import com.tiqs.auth.UserRole;
 import com.tiqs.common.ApiResponse;
 import com.tiqs.common.BusinessException;
+import com.tiqs.common.CursorPage;
+import com.tiqs.dto.CommentNode;
 import com.tiqs.entity.Comment;
 import com.tiqs.entity.Discussion;
 import com.tiqs.service.CommentService;
@@ -45,6 +47,18 @@ public class DiscussionController {
         return ApiResponse.ok(discussionService.listByClass(classId));
     }
 
+    /**
+     * 带 pageSize 参数时按游标分页返回，不带时保持原有的全量列表返回
+     */
+    @GetMapping(value = "/class/{classId}", params = "pageSize")
+    public ApiResponse<CursorPage<Discussion>> listByClassPage(
+            @PathVariable Long classId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam("pageSize") Integer pageSize) {
+        log.debug("分页查询班级讨论列表 classId={} cursor={} pageSize={}", classId, cursor, pageSize);
+        return ApiResponse.ok(discussionService.listByClassPage(classId, cursor, pageSize));
+    }
+
     @GetMapping("/{id}")
     public ApiResponse<Discussion> get(@PathVariable Long id) {
         log.debug("获取讨论详情 id={}", id);
@@ -97,6 +111,32 @@ public class DiscussionController {
         return ApiResponse.ok(commentService.listByDiscussion(discussionId));
     }
 
+    /**
+     * 按顶层评论分页返回组装好的评论树，超过 maxDepth 的回复通过 replies 接口继续加载
+     */
+    @GetMapping("/{discussionId}/comments/tree")
+    public ApiResponse<CursorPage<CommentNode>> listCommentTree(
+            @PathVariable Long discussionId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "pageSize", required = false) Integer pageSize,
+            @RequestParam(value = "maxDepth", required = false) Integer maxDepth) {
+        log.debug("查询评论树 discussionId={} cursor={} pageSize={} maxDepth={}", discussionId, cursor, pageSize, maxDepth);
+        return ApiResponse.ok(commentService.listTree(discussionId, cursor, pageSize, maxDepth));
+    }
+
+    /**
+     * 按游标分页加载某条评论的直接回复，cursor 可以是上一页的 nextCursor 或节点的 repliesCursor
+     */
+    @GetMapping("/comments/{id}/replies")
+    public ApiResponse<CursorPage<CommentNode>> listReplies(
+            @PathVariable Long id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "pageSize", required = false) Integer pageSize,
+            @RequestParam(value = "maxDepth", required = false) Integer maxDepth) {
+        log.debug("加载评论回复 commentId={} cursor={} pageSize={} maxDepth={}", id, cursor, pageSize, maxDepth);
+        return ApiResponse.ok(commentService.listReplies(id, cursor, pageSize, maxDepth));
+    }
+
     @PutMapping("/comments/{id}")
     public ApiResponse<Comment> updateComment(@PathVariable Long id, @RequestBody Comment comment) {
         Long userId = AuthContextHolder.get().userId();
@@ -9,8 +9,11 @@ import com.tiqs.auth.AuthContext;
 import com.tiqs.auth.AuthContextHolder;
 import com.tiqs.auth.AuthException;
 import com.tiqs.common.ApiResponse;
+import com.tiqs.storage.BlobStore;
+import com.tiqs.storage.StreamingMultipartReader;
+import com.tiqs.storage.UploadInspector;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -18,10 +21,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -31,8 +31,17 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class FileUploadController {
 
-    @Value("${file.upload-dir:uploads}")
-    private String uploadDir;
+    private static final long MAX_FILE_SIZE = 100 * 1024 * 1024;
+
+    // 禁止的可执行文件和SQL文件扩展名
+    private static final String[] FORBIDDEN_EXTENSIONS = {
+            ".exe", ".bat", ".sh", ".cmd", ".com", ".scr", ".msi",
+            ".sql", ".ddl", ".dml", ".pl", ".php", ".asp", ".jsp",
+            ".js", ".vbs", ".py", ".rb", ".ps1", ".bash", ".zsh",
+            ".html", ".htm", ".svg", ".xml", ".xhtml"
+    };
+
+    private final BlobStore blobStore;
 
     @PostMapping("/file")
     public ApiResponse<String> uploadFile(@RequestParam("file") MultipartFile file) {
@@ -43,61 +52,61 @@ public class FileUploadController {
         }
 
         // 检查文件大小
-        if (file.getSize() > 100 * 1024 * 1024) {
+        if (file.getSize() > MAX_FILE_SIZE) {
             throw new IllegalArgumentException("文件大小超出限制，请选择小于100MB的文件");
         }
 
         try {
-            String originalFilename = file.getOriginalFilename();
-            if (originalFilename != null) {
-                String fileExtension = originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase();
-
-                // 禁止的可执行文件和SQL文件扩展名
-                String[] forbiddenExtensions = {
-                        ".exe", ".bat", ".sh", ".cmd", ".com", ".scr", ".msi",
-                        ".sql", ".ddl", ".dml", ".pl", ".php", ".asp", ".jsp",
-                        ".js", ".vbs", ".py", ".rb", ".ps1", ".bash", ".zsh",
-                        ".html", ".htm", ".svg", ".xml", ".xhtml"
-                };
-
-                for (String ext : forbiddenExtensions) {
-                    if (fileExtension.equals(ext)) {
-                        throw new IllegalArgumentException("不支持上传该类型的文件: " + fileExtension);
-                    }
-                }
-            }
-
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
+            String fileExtension = checkExtension(file.getOriginalFilename());
+            return ApiResponse.ok(store(file.getInputStream(), file.getSize(), fileExtension));
+        } catch (IOException e) {
+            throw new RuntimeException("文件上传失败: " + e.getMessage(), e);
+        }
+    }
 
-            // 生成唯一的文件名
-            String fileExtension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            }
+    /**
+     * 流式上传，请求体只读取一次：文件头嗅探与大小检查在写入过程中完成，不经过容器的 multipart 临时文件
+     */
+    @PostMapping("/stream")
+    public ApiResponse<String> uploadFileStream(HttpServletRequest request) throws IOException {
+        requireAuth();
 
-            String uniqueFilename = UUID.randomUUID() + fileExtension;
+        StreamingMultipartReader.FilePart part = StreamingMultipartReader.readFile(request, MAX_FILE_SIZE);
+        String fileExtension = checkExtension(part.fileName());
+        String sniffExtension = fileExtension.isEmpty() ? "" : fileExtension.substring(1).toLowerCase();
+        try {
+            InputStream content = UploadInspector.inspect(part.content(), sniffExtension, MAX_FILE_SIZE);
+            return ApiResponse.ok(store(content, -1, fileExtension));
+        } catch (UploadInspector.RejectedUploadException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
 
-            // 按日期创建子目录
-            String datePath = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-            Path dateDir = uploadPath.resolve(datePath);
-            if (!Files.exists(dateDir)) {
-                Files.createDirectories(dateDir);
+    /**
+     * @return 带点的扩展名，没有扩展名时返回空串
+     */
+    private String checkExtension(String originalFilename) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            return "";
+        }
+        String fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        String lowerCase = fileExtension.toLowerCase();
+        for (String ext : FORBIDDEN_EXTENSIONS) {
+            if (lowerCase.equals(ext)) {
+                throw new IllegalArgumentException("不支持上传该类型的文件: " + lowerCase);
             }
-
-            // 保存文件
-            Path targetLocation = dateDir.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-            // 返回文件的访问路径
-            String fileUrl = "/uploads/" + datePath + "/" + uniqueFilename;
-            return ApiResponse.ok(fileUrl);
-
-        } catch (IOException e) {
-            throw new RuntimeException("文件上传失败: " + e.getMessage(), e);
         }
+        return fileExtension;
+    }
+
+    /**
+     * 按日期分目录保存，返回文件的访问路径
+     */
+    private String store(InputStream content, long length, String fileExtension) throws IOException {
+        String uniqueFilename = UUID.randomUUID() + fileExtension;
+        String datePath = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
+        blobStore.put("/" + datePath + "/" + uniqueFilename, content, length);
+        return "/uploads/" + datePath + "/" + uniqueFilename;
     }
 
     private void requireAuth() {
@@ -0,0 +1,86 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 19:48:52
+ * @description SignedDownloadController - 凭签名链接下载云盘文件，不经过登录校验和数据库
+ */
+package com.tiqs.controller;
+
+import com.tiqs.service.impl.DownloadCountBuffer;
+import com.tiqs.storage.ContentSource;
+import com.tiqs.storage.ContentStore;
+import com.tiqs.storage.DownloadBandwidthLimiter;
+import com.tiqs.storage.DownloadUrlSigner;
+import com.tiqs.storage.DownloadUrlSigner.SignedDownload;
+import com.tiqs.storage.HotFileCache;
+import com.tiqs.storage.RangeDownloadWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * 链接由 POST /api/cloud/files/{id}/download-url 在校验权限后签发，有效期内任何人持链接均可下载。
+ * 路径不在 /api 下，不经过 AuthInterceptor。
+ * 兑现时不查询数据库；文件删除或修改后由 {@link DownloadUrlSigner#revoke} 撤销此前签发的链接。
+ */
+@Slf4j
+@RestController
+public class SignedDownloadController {
+
+    private final DownloadUrlSigner downloadUrlSigner;
+    private final ContentStore contentStore;
+    private final RangeDownloadWriter rangeDownloadWriter;
+    private final DownloadCountBuffer downloadCountBuffer;
+    private final DownloadBandwidthLimiter bandwidthLimiter;
+    private final HotFileCache hotFileCache;
+
+    public SignedDownloadController(DownloadUrlSigner downloadUrlSigner, ContentStore contentStore,
+                                    RangeDownloadWriter rangeDownloadWriter, DownloadCountBuffer downloadCountBuffer,
+                                    DownloadBandwidthLimiter bandwidthLimiter, HotFileCache hotFileCache) {
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.contentStore = contentStore;
+        this.rangeDownloadWriter = rangeDownloadWriter;
+        this.downloadCountBuffer = downloadCountBuffer;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.hotFileCache = hotFileCache;
+    }
+
+    @GetMapping("/dl/{token}")
+    public void download(@PathVariable String token, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        SignedDownload download = downloadUrlSigner.verify(token);
+        if (download == null) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "下载链接无效、已过期或已失效");
+            return;
+        }
+
+        ContentSource content;
+        try {
+            ContentSource cached = hotFileCache.get(download.fileId(), download.contentHash());
+            content = cached != null ? cached
+                    : contentStore.open(download.filePath(), download.contentHash(), download.fileSize());
+        } catch (NoSuchFileException e) {
+            log.warn("签名下载的物理文件不存在 fileId={} path={}", download.fileId(), download.filePath());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try (DownloadBandwidthLimiter.Lease lease = bandwidthLimiter.tryOpen(download.userId(), download.priority())) {
+            if (lease == null) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "当前下载人数过多，请稍后重试");
+                return;
+            }
+            // 链接过期后不应继续使用缓存
+            long maxAge = Math.max(0, (download.expiresAt() - System.currentTimeMillis()) / 1000);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + maxAge);
+            downloadCountBuffer.increment(download.fileId());
+            rangeDownloadWriter.write(request, response, lease.throttle(content), download.fileName());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 19:05:48
+ * @description UploadedFileController - 从存储中读取 /api/upload/file 上传的公开文件
+ */
+package com.tiqs.controller;
+
+import com.tiqs.storage.BlobStore;
+import com.tiqs.storage.ContentSource;
+import com.tiqs.storage.RangeDownloadWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.StringJoiner;
+
+/**
+ * 替代原先直接映射 upload-dir 的静态资源处理，使用 S3 存储时同样可用。
+ * 云盘文件（/cloud/ 下）需经过权限校验，不允许通过此路径访问。
+ */
+@RestController
+public class UploadedFileController {
+
+    private static final String URL_PREFIX = "/uploads";
+    private static final String CLOUD_DIR = "cloud";
+
+    private final BlobStore blobStore;
+    private final RangeDownloadWriter rangeDownloadWriter;
+
+    public UploadedFileController(BlobStore blobStore, RangeDownloadWriter rangeDownloadWriter) {
+        this.blobStore = blobStore;
+        this.rangeDownloadWriter = rangeDownloadWriter;
+    }
+
+    @GetMapping(URL_PREFIX + "/**")
+    public void getFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = normalizeKey(request.getRequestURI().substring(request.getContextPath().length() + URL_PREFIX.length()));
+        if (key == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        ContentSource content;
+        try {
+            content = blobStore.read(key, null);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String contentType = MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+        // 文件名带随机UUID，内容不会变化
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        rangeDownloadWriter.write(request, response, content, null, contentType);
+    }
+
+    /**
+     * 解码并规范化请求路径后再判断是否位于云盘目录下，防止 "/./cloud"、"//cloud"、"%2e" 等写法绕过检查
+     *
+     * @return 规范化后的存储键（以 / 开头），空路径、包含 ".." 或位于云盘目录下时返回 null
+     */
+    static String normalizeKey(String rawPath) {
+        String path;
+        try {
+            path = UriUtils.decode(rawPath, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0 || path.indexOf(';') >= 0) {
+            return null;
+        }
+        StringJoiner key = new StringJoiner("/", "/", "");
+        boolean first = true;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment) || (first && CLOUD_DIR.equalsIgnoreCase(segment))) {
+                return null;
+            }
+            key.add(segment);
+            first = false;
+        }
+        return first ? null : key.toString();
+    }
+}
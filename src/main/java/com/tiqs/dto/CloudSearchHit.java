@@ -0,0 +1,34 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:46:03
+ * @description CloudSearchHit - 云盘搜索结果
+ */
+package com.tiqs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CloudSearchHit {
+    /**
+     * file 或 folder
+     */
+    private String type;
+    private Long id;
+    private String name;
+    private String description;
+    private Long folderId;
+    /**
+     * 文件所在文件夹路径，或文件夹自身路径
+     */
+    private String path;
+    private String fileType;
+    private Long fileSize;
+    private LocalDateTime createdAt;
+    private double score;
+}
@@ -0,0 +1,42 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 10:05:31
+ * @description CloudUploadSession - 云盘分片上传会话
+ */
+package com.tiqs.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CloudUploadSession {
+    private String sessionId;
+    private Long classId;
+    private Long uploaderId;
+    private Long folderId;
+    private String fileName;
+    private Long fileSize;
+    private Integer chunkSize;
+    private Integer totalChunks;
+    private String description;
+    private Boolean isPublic;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+
+    /**
+     * 已上传完成的分片序号（从0开始）
+     */
+    private List<Integer> uploadedChunks;
+
+    public long chunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public long chunkLength(int index) {
+        return Math.min(chunkSize, fileSize - chunkOffset(index));
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-19 01:06:27
+ * @description CommentNode - 服务端组装的评论树节点
+ */
+package com.tiqs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentNode {
+    private Long id;
+    private Long parentId;
+    private String content;
+    private Long authorId;
+    private String authorName;
+    private String authorRole;
+    private Boolean isEdited;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    /**
+     * 相对本次查询起点的层级，最上层为 1
+     */
+    private int depth;
+    /**
+     * 直接回复总数
+     */
+    private int replyCount;
+    /**
+     * 还有未返回的直接回复（超过层级上限或每个节点的回复数上限），
+     * 需通过 /api/discussions/comments/{id}/replies 继续加载
+     */
+    private boolean hasMoreReplies;
+    /**
+     * 继续加载直接回复时传入的 cursor，从已返回的最后一条回复之后开始；为空时从第一条开始
+     */
+    private String repliesCursor;
+    private List<CommentNode> replies = new ArrayList<>();
+}
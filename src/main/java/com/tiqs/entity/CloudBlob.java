@@ -0,0 +1,25 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 11:02:17
+ * @description CloudBlob - 按内容哈希去重存储的物理文件
+ */
+package com.tiqs.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CloudBlob {
+    private String contentHash;
+    private String filePath;
+    private Long fileSize;
+    private Integer refCount;
+    private String storageTier;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
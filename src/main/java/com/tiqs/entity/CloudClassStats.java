@@ -0,0 +1,23 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 15:08:44
+ * @description CloudClassStats - 班级云盘统计（增量维护）
+ */
+package com.tiqs.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CloudClassStats {
+    private Long classId;
+    private Long totalSize;
+    private Integer fileCount;
+    private Integer folderCount;
+    private LocalDateTime updatedAt;
+}
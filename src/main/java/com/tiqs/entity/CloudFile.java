@@ -26,6 +26,7 @@ public class CloudFile {
     private Long uploaderId;
     private Integer downloadCount;
     private Boolean isPublic;
+    private String contentHash;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -0,0 +1,26 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 16:31:05
+ * @description CloudFileTombstone - 待后台清理的物理文件
+ */
+package com.tiqs.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CloudFileTombstone {
+    private Long id;
+    private String filePath;
+    /**
+     * 对应 cloud_blobs 的内容哈希，历史文件或孤儿文件为 null
+     */
+    private String contentHash;
+    private Integer attempts;
+    private LocalDateTime createdAt;
+}
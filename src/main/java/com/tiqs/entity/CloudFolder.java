@@ -31,6 +31,7 @@ public class CloudFolder {
     private List<CloudFile> files;
     private String creatorName;
     private Integer fileCount;
+    private Long totalSize;
     private Integer folderCount;
 
     public CloudFolder(Long classId, String name, Long parentFolderId, String path, Long creatorId) {
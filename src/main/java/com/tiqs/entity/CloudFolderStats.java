@@ -0,0 +1,23 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 15:08:44
+ * @description CloudFolderStats - 文件夹直属文件统计（增量维护）
+ */
+package com.tiqs.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CloudFolderStats {
+    private Long folderId;
+    private Long classId;
+    private Long totalSize;
+    private Integer fileCount;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,39 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 23:52:08
+ * @description CloudScrubReport - 巡检发现的缺失或内容损坏的文件
+ */
+package com.tiqs.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CloudScrubReport {
+    public static final String MISSING = "MISSING";
+    public static final String MISMATCH = "MISMATCH";
+
+    private Long id;
+    private Long fileId;
+    private Long classId;
+    private String filePath;
+    /**
+     * 登记的内容哈希
+     */
+    private String contentHash;
+    /**
+     * 实际读取到的内容哈希，文件缺失时为 null
+     */
+    private String actualHash;
+    /**
+     * MISSING / MISMATCH
+     */
+    private String problem;
+    private LocalDateTime firstDetectedAt;
+    private LocalDateTime lastDetectedAt;
+}
@@ -0,0 +1,38 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 23:52:08
+ * @description CloudScrubState - 存储完整性巡检进度（单行）
+ */
+package com.tiqs.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CloudScrubState {
+    /**
+     * 本轮已校验到的最大 cloud_files.id
+     */
+    private Long lastFileId;
+    /**
+     * 已完成的轮数
+     */
+    private Integer passCount;
+    private LocalDateTime passStartedAt;
+    /**
+     * 本轮已校验的文件数和字节数
+     */
+    private Long filesChecked;
+    private Long bytesChecked;
+    /**
+     * 当前持有巡检租约的节点，租约到期前其他节点不会开始巡检
+     */
+    private String lockedBy;
+    private LocalDateTime lockedUntil;
+    private LocalDateTime updatedAt;
+}
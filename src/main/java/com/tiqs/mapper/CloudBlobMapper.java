@@ -0,0 +1,82 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 11:02:17
+ * @description CloudBlobMapper
+ */
+package com.tiqs.mapper;
+
+import com.tiqs.entity.CloudBlob;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface CloudBlobMapper {
+
+    /**
+     * 新增物理文件记录，已存在时引用计数加一。
+     * MySQL 返回 1 表示新插入，2 表示已存在并更新。
+     */
+    @Insert("INSERT INTO cloud_blobs(content_hash, file_path, file_size, ref_count, created_at, updated_at) " +
+            "VALUES(#{contentHash}, #{filePath}, #{fileSize}, 1, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = NOW()")
+    int insertOrReference(CloudBlob blob);
+
+    @Select("SELECT content_hash AS contentHash, file_path AS filePath, file_size AS fileSize, ref_count AS refCount, " +
+            "storage_tier AS storageTier, created_at AS createdAt, updated_at AS updatedAt " +
+            "FROM cloud_blobs WHERE content_hash = #{contentHash}")
+    CloudBlob findByHash(String contentHash);
+
+    @Select("SELECT content_hash AS contentHash, file_path AS filePath, file_size AS fileSize, ref_count AS refCount, " +
+            "storage_tier AS storageTier, created_at AS createdAt, updated_at AS updatedAt " +
+            "FROM cloud_blobs WHERE content_hash = #{contentHash} FOR UPDATE")
+    CloudBlob findByHashForUpdate(String contentHash);
+
+    @Update("UPDATE cloud_blobs SET ref_count = ref_count - 1, updated_at = NOW() WHERE content_hash = #{contentHash}")
+    int decrementRefCount(String contentHash);
+
+    @Delete("DELETE FROM cloud_blobs WHERE content_hash = #{contentHash} AND ref_count <= 0")
+    int deleteIfUnreferenced(String contentHash);
+
+    /**
+     * 批量扣减引用计数，key 为内容哈希，value 为扣减数量
+     */
+    @Update({"<script>",
+            "UPDATE cloud_blobs SET ref_count = ref_count - CASE content_hash ",
+            "<foreach collection='counts' index='hash' item='count'>WHEN #{hash} THEN #{count} </foreach>",
+            "ELSE 0 END, updated_at = NOW() WHERE content_hash IN ",
+            "<foreach collection='counts' index='hash' open='(' separator=',' close=')'>#{hash}</foreach>",
+            "</script>"})
+    int subtractRefCounts(@Param("counts") Map<String, Long> counts);
+
+    /**
+     * 切换存储层级，只在当前层级与预期一致时更新。不修改 updated_at，它用于判断冷热
+     */
+    @Update("UPDATE cloud_blobs SET storage_tier = #{tier}, updated_at = updated_at " +
+            "WHERE content_hash = #{contentHash} AND storage_tier = #{expectedTier}")
+    int updateTier(@Param("contentHash") String contentHash, @Param("expectedTier") String expectedTier,
+                   @Param("tier") String tier);
+
+    /**
+     * 按内容哈希顺序查找可以转入冷存储的物理文件：
+     * 所有引用它的文件都已闲置、下载次数较少且属于可压缩的类型
+     */
+    @Select({"<script>",
+            "SELECT b.content_hash AS contentHash, b.file_path AS filePath, b.file_size AS fileSize, b.ref_count AS refCount, ",
+            "b.storage_tier AS storageTier ",
+            "FROM cloud_blobs b ",
+            "WHERE b.storage_tier = 'HOT' AND b.ref_count &gt; 0 AND b.content_hash &gt; #{afterHash} ",
+            "AND b.file_size &gt;= #{minSize} AND b.updated_at &lt; #{idleBefore} ",
+            "AND NOT EXISTS (SELECT 1 FROM cloud_files f WHERE f.content_hash = b.content_hash ",
+            "AND (f.updated_at &gt;= #{idleBefore} OR f.download_count &gt;= #{maxDownloads} OR f.file_type NOT IN ",
+            "<foreach collection='fileTypes' item='fileType' open='(' separator=',' close=')'>#{fileType}</foreach>",
+            ")) ",
+            "ORDER BY b.content_hash LIMIT #{limit}",
+            "</script>"})
+    List<CloudBlob> findColdCandidates(@Param("afterHash") String afterHash, @Param("idleBefore") LocalDateTime idleBefore,
+                                       @Param("maxDownloads") int maxDownloads, @Param("minSize") long minSize,
+                                       @Param("fileTypes") Collection<String> fileTypes, @Param("limit") int limit);
+}
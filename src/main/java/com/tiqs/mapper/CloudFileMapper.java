@@ -5,33 +5,74 @@
  */
 package com.tiqs.mapper;
 
+import com.tiqs.entity.CloudBlob;
 import com.tiqs.entity.CloudFile;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface CloudFileMapper {
     @Insert("INSERT INTO cloud_files(class_id, file_name, original_file_name, file_path, file_size, " +
-            "file_type, description, uploader_id, download_count, is_public, folder_id, created_at, updated_at) " +
+            "file_type, description, uploader_id, download_count, is_public, folder_id, content_hash, created_at, updated_at) " +
             "VALUES(#{classId}, #{fileName}, #{originalFileName}, #{filePath}, #{fileSize}, " +
-            "#{fileType}, #{description}, #{uploaderId}, #{downloadCount}, #{isPublic}, #{folderId}, NOW(), NOW())")
+            "#{fileType}, #{description}, #{uploaderId}, #{downloadCount}, #{isPublic}, #{folderId}, #{contentHash}, NOW(), NOW())")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(CloudFile cloudFile);
 
+    /**
+     * 多行插入一批文件记录，生成的主键回填到各元素
+     */
+    @Insert({"<script>",
+            "INSERT INTO cloud_files(class_id, file_name, original_file_name, file_path, file_size, ",
+            "file_type, description, uploader_id, download_count, is_public, folder_id, content_hash, created_at, updated_at) VALUES ",
+            "<foreach collection='files' item='f' separator=','>",
+            "(#{f.classId}, #{f.fileName}, #{f.originalFileName}, #{f.filePath}, #{f.fileSize}, ",
+            "#{f.fileType}, #{f.description}, #{f.uploaderId}, #{f.downloadCount}, #{f.isPublic}, #{f.folderId}, #{f.contentHash}, NOW(), NOW())",
+            "</foreach>",
+            "</script>"})
+    @Options(useGeneratedKeys = true, keyProperty = "files.id", keyColumn = "id")
+    int insertBatch(@Param("files") List<CloudFile> files);
+
     @Select("SELECT f.id, f.class_id AS classId, f.file_name AS fileName, f.original_file_name AS originalFileName, " +
             "f.file_path AS filePath, f.file_size AS fileSize, f.file_type AS fileType, f.description, " +
-            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, " +
-            "f.created_at AS createdAt, f.updated_at AS updatedAt, " +
+            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, f.content_hash AS contentHash, " +
+            "f.created_at AS createdAt, f.updated_at AS updatedAt, f.folder_id AS folderId, " +
             "u.username AS uploaderName, u.role AS uploaderRole " +
             "FROM cloud_files f " +
             "LEFT JOIN users u ON f.uploader_id = u.id " +
             "WHERE f.id = #{id}")
     CloudFile findById(Long id);
 
+    @Select({"<script>",
+            "SELECT f.id, f.class_id AS classId, f.file_name AS fileName, f.original_file_name AS originalFileName, ",
+            "f.file_path AS filePath, f.file_size AS fileSize, f.file_type AS fileType, f.description, ",
+            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, f.content_hash AS contentHash, ",
+            "f.created_at AS createdAt, f.updated_at AS updatedAt, f.folder_id AS folderId, ",
+            "u.username AS uploaderName, u.role AS uploaderRole ",
+            "FROM cloud_files f ",
+            "LEFT JOIN users u ON f.uploader_id = u.id ",
+            "WHERE f.id IN ",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<CloudFile> findByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 完整性巡检按主键顺序分批读取
+     */
+    @Select("SELECT id, class_id AS classId, file_path AS filePath, file_size AS fileSize, content_hash AS contentHash " +
+            "FROM cloud_files WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<CloudFile> findScrubBatch(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    @Select("SELECT MAX(id) FROM cloud_files")
+    Long findMaxId();
+
     @Select("SELECT f.id, f.class_id AS classId, f.file_name AS fileName, f.original_file_name AS originalFileName, " +
             "f.file_path AS filePath, f.file_size AS fileSize, f.file_type AS fileType, f.description, " +
-            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, " +
+            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, f.content_hash AS contentHash, " +
             "f.created_at AS createdAt, f.updated_at AS updatedAt, " +
             "u.username AS uploaderName, u.role AS uploaderRole " +
             "FROM cloud_files f " +
@@ -42,7 +83,7 @@ public interface CloudFileMapper {
 
     @Select("SELECT f.id, f.class_id AS classId, f.file_name AS fileName, f.original_file_name AS originalFileName, " +
             "f.file_path AS filePath, f.file_size AS fileSize, f.file_type AS fileType, f.description, " +
-            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, " +
+            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, f.content_hash AS contentHash, " +
             "f.created_at AS createdAt, f.updated_at AS updatedAt, " +
             "u.username AS uploaderName, u.role AS uploaderRole " +
             "FROM cloud_files f " +
@@ -53,7 +94,7 @@ public interface CloudFileMapper {
 
     @Select("SELECT f.id, f.class_id AS classId, f.file_name AS fileName, f.original_file_name AS originalFileName, " +
             "f.file_path AS filePath, f.file_size AS fileSize, f.file_type AS fileType, f.description, " +
-            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, " +
+            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, f.content_hash AS contentHash, " +
             "f.created_at AS createdAt, f.updated_at AS updatedAt, " +
             "u.username AS uploaderName, u.role AS uploaderRole " +
             "FROM cloud_files f " +
@@ -62,11 +103,60 @@ public interface CloudFileMapper {
             "ORDER BY f.created_at DESC")
     List<CloudFile> findByClassIdAndUploader(@Param("classId") Long classId, @Param("uploaderId") Long uploaderId);
 
+    /**
+     * 按 (created_at, id) 倒序的游标分页查询，cursorTime / cursorId 为空时查询第一页
+     */
+    @Select({"<script>",
+            "SELECT f.id, f.class_id AS classId, f.file_name AS fileName, f.original_file_name AS originalFileName, ",
+            "f.file_path AS filePath, f.file_size AS fileSize, f.file_type AS fileType, f.description, ",
+            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, f.content_hash AS contentHash, ",
+            "f.created_at AS createdAt, f.updated_at AS updatedAt, f.folder_id, ",
+            "u.username AS uploaderName, u.role AS uploaderRole, ",
+            "fo.name AS folderName, fo.path AS folderPath ",
+            "FROM cloud_files f ",
+            "LEFT JOIN users u ON f.uploader_id = u.id ",
+            "LEFT JOIN cloud_folders fo ON f.folder_id = fo.id ",
+            "<where>",
+            "<choose>",
+            "<when test='folderId != null'>f.folder_id = #{folderId}</when>",
+            "<otherwise>f.class_id = #{classId}</otherwise>",
+            "</choose>",
+            "<if test='uploaderId != null'> AND f.uploader_id = #{uploaderId}</if>",
+            "<if test='fileType != null'> AND f.file_type LIKE CONCAT('%', #{fileType}, '%')</if>",
+            "<if test='cursorTime != null and cursorId != null'>",
+            " AND (f.created_at &lt; #{cursorTime} OR (f.created_at = #{cursorTime} AND f.id &lt; #{cursorId}))",
+            "</if>",
+            "</where>",
+            "ORDER BY f.created_at DESC, f.id DESC ",
+            "LIMIT #{limit}",
+            "</script>"})
+    List<CloudFile> findPage(@Param("classId") Long classId,
+                             @Param("folderId") Long folderId,
+                             @Param("uploaderId") Long uploaderId,
+                             @Param("fileType") String fileType,
+                             @Param("cursorTime") LocalDateTime cursorTime,
+                             @Param("cursorId") Long cursorId,
+                             @Param("limit") int limit);
+
+    /**
+     * 建立搜索索引所需的字段，不关联其他表
+     */
+    @Select("SELECT id, class_id AS classId, original_file_name AS originalFileName, file_size AS fileSize, " +
+            "file_type AS fileType, description, uploader_id AS uploaderId, is_public AS isPublic, " +
+            "folder_id AS folderId, created_at AS createdAt " +
+            "FROM cloud_files WHERE class_id = #{classId}")
+    List<CloudFile> findSearchDocsByClassId(@Param("classId") Long classId);
+
     @Update("UPDATE cloud_files SET description = #{description}, is_public = #{isPublic}, updated_at = NOW() WHERE id = #{id}")
     int update(CloudFile cloudFile);
 
-    @Update("UPDATE cloud_files SET download_count = download_count + 1 WHERE id = #{id}")
-    int incrementDownloadCount(Long id);
+    @Update({"<script>",
+            "UPDATE cloud_files SET download_count = download_count + CASE id ",
+            "<foreach collection='deltas' index='fileId' item='delta'>WHEN #{fileId} THEN #{delta} </foreach>",
+            "ELSE 0 END WHERE id IN ",
+            "<foreach collection='deltas' index='fileId' open='(' separator=',' close=')'>#{fileId}</foreach>",
+            "</script>"})
+    int addDownloadCounts(@Param("deltas") Map<Long, Long> deltas);
 
     @Delete("DELETE FROM cloud_files WHERE id = #{id}")
     int delete(Long id);
@@ -80,9 +170,23 @@ public interface CloudFileMapper {
     @Select("SELECT COUNT(*) FROM cloud_files WHERE class_id = #{classId}")
     Integer getFileCountByClassId(Long classId);
 
+    @Select("SELECT COALESCE(SUM(file_size), 0) FROM cloud_files WHERE uploader_id = #{uploaderId}")
+    long getTotalSizeByUploaderId(@Param("uploaderId") Long uploaderId);
+
+    /**
+     * 按上传者汇总一批文件夹中的文件大小，fileSize 为该上传者的文件总大小
+     */
+    @Select({"<script>",
+            "SELECT uploader_id AS uploaderId, SUM(file_size) AS fileSize ",
+            "FROM cloud_files WHERE folder_id IN ",
+            "<foreach collection='folderIds' item='folderId' open='(' separator=',' close=')'>#{folderId}</foreach>",
+            "GROUP BY uploader_id",
+            "</script>"})
+    List<CloudFile> findUploaderSizesByFolderIds(@Param("folderIds") Collection<Long> folderIds);
+
     @Select("SELECT f.id, f.class_id AS classId, f.file_name AS fileName, f.original_file_name AS originalFileName, " +
             "f.file_path AS filePath, f.file_size AS fileSize, f.file_type AS fileType, f.description, " +
-            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, " +
+            "f.uploader_id AS uploaderId, f.download_count AS downloadCount, f.is_public AS isPublic, f.content_hash AS contentHash, " +
             "f.created_at AS createdAt, f.updated_at AS updatedAt, f.folder_id, " +
             "u.username AS uploaderName, u.role AS uploaderRole, " +
             "fo.name AS folderName, fo.path AS folderPath " +
@@ -96,6 +200,26 @@ public interface CloudFileMapper {
     @Delete("DELETE FROM cloud_files WHERE folder_id = #{folderId}")
     int deleteByFolderId(@Param("folderId") Long folderId);
 
+    /**
+     * 按物理文件汇总一批文件夹中的文件引用，refCount 为引用该物理文件的记录数
+     */
+    @Select({"<script>",
+            "SELECT content_hash AS contentHash, file_path AS filePath, SUM(file_size) AS fileSize, COUNT(*) AS refCount ",
+            "FROM cloud_files WHERE folder_id IN ",
+            "<foreach collection='folderIds' item='folderId' open='(' separator=',' close=')'>#{folderId}</foreach>",
+            "GROUP BY content_hash, file_path",
+            "</script>"})
+    List<CloudBlob> findContentRefsByFolderIds(@Param("folderIds") Collection<Long> folderIds);
+
+    @Delete({"<script>",
+            "DELETE FROM cloud_files WHERE folder_id IN ",
+            "<foreach collection='folderIds' item='folderId' open='(' separator=',' close=')'>#{folderId}</foreach>",
+            "</script>"})
+    int deleteByFolderIds(@Param("folderIds") Collection<Long> folderIds);
+
+    @Select("SELECT COUNT(*) FROM cloud_files WHERE file_path = #{filePath}")
+    int countByFilePath(@Param("filePath") String filePath);
+
     @Update("UPDATE cloud_files SET folder_id = #{folderId} WHERE id = #{fileId}")
     int moveFile(@Param("fileId") Long fileId, @Param("folderId") Long folderId);
 }
\ No newline at end of file
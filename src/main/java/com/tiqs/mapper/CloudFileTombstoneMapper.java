@@ -0,0 +1,50 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 16:31:05
+ * @description CloudFileTombstoneMapper
+ */
+package com.tiqs.mapper;
+
+import com.tiqs.entity.CloudFileTombstone;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface CloudFileTombstoneMapper {
+
+    @Insert("INSERT INTO cloud_file_tombstones(file_path, content_hash, attempts, created_at) " +
+            "VALUES(#{filePath}, #{contentHash}, 0, NOW())")
+    int insert(@Param("filePath") String filePath, @Param("contentHash") String contentHash);
+
+    /**
+     * 为引用计数已归零的物理文件登记待清理记录
+     */
+    @Insert({"<script>",
+            "INSERT INTO cloud_file_tombstones(file_path, content_hash, attempts, created_at) ",
+            "SELECT file_path, content_hash, 0, NOW() FROM cloud_blobs ",
+            "WHERE ref_count &lt;= 0 AND content_hash IN ",
+            "<foreach collection='contentHashes' item='hash' open='(' separator=',' close=')'>#{hash}</foreach>",
+            "</script>"})
+    int insertUnreferencedBlobs(@Param("contentHashes") Collection<String> contentHashes);
+
+    @Insert({"<script>",
+            "INSERT INTO cloud_file_tombstones(file_path, content_hash, attempts, created_at) VALUES ",
+            "<foreach collection='filePaths' item='path' separator=','>(#{path}, NULL, 0, NOW())</foreach>",
+            "</script>"})
+    int insertPaths(@Param("filePaths") Collection<String> filePaths);
+
+    @Select("SELECT id, file_path AS filePath, content_hash AS contentHash, attempts, created_at AS createdAt " +
+            "FROM cloud_file_tombstones WHERE attempts < #{maxAttempts} ORDER BY id LIMIT #{limit}")
+    List<CloudFileTombstone> findPending(@Param("maxAttempts") int maxAttempts, @Param("limit") int limit);
+
+    @Select("SELECT COUNT(*) FROM cloud_file_tombstones WHERE file_path = #{filePath}")
+    int countByFilePath(@Param("filePath") String filePath);
+
+    @Update("UPDATE cloud_file_tombstones SET attempts = attempts + 1 WHERE id = #{id}")
+    int markFailed(@Param("id") Long id);
+
+    @Delete("DELETE FROM cloud_file_tombstones WHERE id = #{id}")
+    int delete(@Param("id") Long id);
+}
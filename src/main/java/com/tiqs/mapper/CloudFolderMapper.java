@@ -8,6 +8,7 @@ package com.tiqs.mapper;
 import com.tiqs.entity.CloudFolder;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -40,9 +41,10 @@ public interface CloudFolderMapper {
 
     @Select("SELECT f.*, up.real_name as creator_name, " +
             "(SELECT COUNT(*) FROM cloud_folders WHERE parent_folder_id = f.id) as folder_count, " +
-            "(SELECT COUNT(*) FROM cloud_files WHERE folder_id = f.id) as file_count " +
+            "COALESCE(fs.file_count, 0) as file_count, COALESCE(fs.total_size, 0) as total_size " +
             "FROM cloud_folders f " +
             "LEFT JOIN user_profile up ON f.creator_id = up.user_id " +
+            "LEFT JOIN cloud_folder_stats fs ON fs.folder_id = f.id " +
             "WHERE f.class_id = #{classId} AND f.parent_folder_id = #{parentFolderId} " +
             "ORDER BY f.name")
     List<CloudFolder> findWithStats(@Param("classId") Long classId, @Param("parentFolderId") Long parentFolderId);
@@ -50,11 +52,31 @@ public interface CloudFolderMapper {
     @Select("SELECT COUNT(*) FROM cloud_folders WHERE class_id = #{classId} AND parent_folder_id = #{parentFolderId}")
     int countByParentId(@Param("classId") Long classId, @Param("parentFolderId") Long parentFolderId);
 
-    @Select("SELECT COUNT(*) FROM cloud_folders WHERE class_id = #{classId} AND name = #{name} AND parent_folder_id = #{parentFolderId}")
+    /**
+     * parentFolderId 为空时比较根目录下的同名文件夹（NULL 安全比较）
+     */
+    @Select("SELECT COUNT(*) FROM cloud_folders WHERE class_id = #{classId} AND name = #{name} AND parent_folder_id <=> #{parentFolderId}")
     int countByName(@Param("classId") Long classId, @Param("name") String name, @Param("parentFolderId") Long parentFolderId);
 
-    @Update("UPDATE cloud_folders SET name = #{name}, updated_at = CURRENT_TIMESTAMP WHERE id = #{id}")
-    int updateName(@Param("id") Long id, @Param("name") String name);
+    @Update("UPDATE cloud_folders SET name = #{name}, path = #{path}, updated_at = CURRENT_TIMESTAMP WHERE id = #{id}")
+    int updateName(@Param("id") Long id, @Param("name") String name, @Param("path") String path);
+
+    /**
+     * 重写指定子孙文件夹路径的公共前缀。子孙由 parent_folder_id 递归确定后传入，路径只用于替换前缀，
+     * 不用于判断归属（path 不保证唯一）；路径与前缀不一致的行不修改，由 FolderPathRepairJob 校正。
+     * descendantPattern 为转义后的 "旧路径/%"，oldPrefixLength 为 "旧路径/" 的字符数
+     */
+    @Update({"<script>",
+            "UPDATE cloud_folders SET path = CONCAT(#{newPrefix}, SUBSTRING(path, #{oldPrefixLength} + 1)), ",
+            "updated_at = CURRENT_TIMESTAMP ",
+            "WHERE path LIKE #{descendantPattern} AND id IN ",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int rewritePathPrefix(@Param("ids") Collection<Long> ids, @Param("descendantPattern") String descendantPattern,
+                          @Param("newPrefix") String newPrefix, @Param("oldPrefixLength") int oldPrefixLength);
+
+    @Update("UPDATE cloud_folders SET path = #{path} WHERE id = #{id}")
+    int updatePath(@Param("id") Long id, @Param("path") String path);
 
     @Update("UPDATE cloud_folders SET parent_folder_id = #{newParentId}, path = #{newPath}, updated_at = CURRENT_TIMESTAMP WHERE id = #{id}")
     int moveFolder(@Param("id") Long id, @Param("newParentId") Long newParentId, @Param("newPath") String newPath);
@@ -62,6 +84,12 @@ public interface CloudFolderMapper {
     @Delete("DELETE FROM cloud_folders WHERE id = #{id}")
     int delete(@Param("id") Long id);
 
+    @Delete({"<script>",
+            "DELETE FROM cloud_folders WHERE id IN ",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
     @Select("WITH RECURSIVE folder_tree AS (" +
             "  SELECT id, class_id, name, parent_folder_id, path, creator_id, created_at, updated_at, 0 as level " +
             "  FROM cloud_folders WHERE id = #{folderId} " +
@@ -70,9 +98,25 @@ public interface CloudFolderMapper {
             "  FROM cloud_folders f " +
             "  INNER JOIN folder_tree ft ON f.parent_folder_id = ft.id" +
             ") " +
-            "SELECT id FROM folder_tree")
+            "SELECT id FROM folder_tree ORDER BY level")
     List<Long> findAllSubFolderIds(@Param("folderId") Long folderId);
 
+    /**
+     * 按 parent_folder_id 递归查询子树（含自身），按层级排序，父文件夹在前
+     */
+    @Select("WITH RECURSIVE folder_tree AS (" +
+            "  SELECT id, 0 as level FROM cloud_folders WHERE id = #{folderId} " +
+            "  UNION ALL " +
+            "  SELECT f.id, ft.level + 1 FROM cloud_folders f " +
+            "  INNER JOIN folder_tree ft ON f.parent_folder_id = ft.id" +
+            ") " +
+            "SELECT f.*, up.real_name as creator_name " +
+            "FROM folder_tree ft " +
+            "JOIN cloud_folders f ON f.id = ft.id " +
+            "LEFT JOIN user_profile up ON f.creator_id = up.user_id " +
+            "ORDER BY ft.level, f.name")
+    List<CloudFolder> findSubtree(@Param("folderId") Long folderId);
+
     @Select("SELECT f.*, up.real_name as creator_name " +
             "FROM cloud_folders f " +
             "LEFT JOIN user_profile up ON f.creator_id = up.user_id " +
@@ -86,4 +130,19 @@ public interface CloudFolderMapper {
             "WHERE f.class_id = #{classId} " +
             "ORDER BY f.name")
     List<CloudFolder> findAllByClassId(@Param("classId") Long classId);
-}
\ No newline at end of file
+
+    /**
+     * 一次加载班级全部文件夹及其直属文件统计，用于在内存中组装文件夹树
+     */
+    @Select("SELECT f.*, up.real_name as creator_name, " +
+            "COALESCE(fs.file_count, 0) as file_count, COALESCE(fs.total_size, 0) as total_size " +
+            "FROM cloud_folders f " +
+            "LEFT JOIN user_profile up ON f.creator_id = up.user_id " +
+            "LEFT JOIN cloud_folder_stats fs ON fs.folder_id = f.id " +
+            "WHERE f.class_id = #{classId} " +
+            "ORDER BY f.name")
+    List<CloudFolder> findAllWithStatsByClassId(@Param("classId") Long classId);
+
+    @Select("SELECT DISTINCT class_id FROM cloud_folders WHERE class_id > #{afterClassId} ORDER BY class_id LIMIT #{limit}")
+    List<Long> findClassIds(@Param("afterClassId") Long afterClassId, @Param("limit") int limit);
+}
@@ -0,0 +1,89 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 23:52:08
+ * @description CloudScrubMapper
+ */
+package com.tiqs.mapper;
+
+import com.tiqs.entity.CloudScrubReport;
+import com.tiqs.entity.CloudScrubState;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface CloudScrubMapper {
+
+    @Insert("INSERT IGNORE INTO cloud_scrub_state(id, last_file_id, pass_count, pass_started_at, files_checked, bytes_checked, updated_at) " +
+            "VALUES(1, 0, 0, NOW(), 0, 0, NOW())")
+    int initState();
+
+    @Select("SELECT last_file_id AS lastFileId, pass_count AS passCount, pass_started_at AS passStartedAt, " +
+            "files_checked AS filesChecked, bytes_checked AS bytesChecked, locked_by AS lockedBy, " +
+            "locked_until AS lockedUntil, updated_at AS updatedAt " +
+            "FROM cloud_scrub_state WHERE id = 1")
+    CloudScrubState findState();
+
+    /**
+     * 租约空闲、已过期或本来就由 owner 持有时取得租约
+     *
+     * @return 1 表示取得租约
+     */
+    @Update("UPDATE cloud_scrub_state SET locked_by = #{owner}, " +
+            "locked_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND) " +
+            "WHERE id = 1 AND (locked_until IS NULL OR locked_until < NOW() OR locked_by = #{owner})")
+    int acquireLease(@Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    @Update("UPDATE cloud_scrub_state SET locked_until = NULL WHERE id = 1 AND locked_by = #{owner}")
+    int releaseLease(@Param("owner") String owner);
+
+    /**
+     * 保存游标并续租，租约已被其他节点接管时不更新
+     *
+     * @return 0 表示已失去租约
+     */
+    @Update("UPDATE cloud_scrub_state SET last_file_id = #{lastFileId}, files_checked = files_checked + #{files}, " +
+            "bytes_checked = bytes_checked + #{bytes}, locked_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND), " +
+            "updated_at = NOW() WHERE id = 1 AND locked_by = #{owner}")
+    int saveProgress(@Param("owner") String owner, @Param("lastFileId") long lastFileId, @Param("files") int files,
+                     @Param("bytes") long bytes, @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * 一轮结束，游标回到开头
+     */
+    @Update("UPDATE cloud_scrub_state SET last_file_id = 0, pass_count = pass_count + 1, pass_started_at = NOW(), " +
+            "files_checked = 0, bytes_checked = 0, updated_at = NOW() WHERE id = 1 AND locked_by = #{owner}")
+    int startPass(@Param("owner") String owner);
+
+    /**
+     * 同一文件的同类问题只保留一条，再次发现时更新最近发现时间
+     */
+    @Insert("INSERT INTO cloud_scrub_reports(file_id, class_id, file_path, content_hash, actual_hash, problem, first_detected_at, last_detected_at) " +
+            "VALUES(#{fileId}, #{classId}, #{filePath}, #{contentHash}, #{actualHash}, #{problem}, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE file_path = VALUES(file_path), actual_hash = VALUES(actual_hash), last_detected_at = NOW()")
+    int upsertReport(CloudScrubReport report);
+
+    /**
+     * 再次校验通过的文件（如已修复）清除报告
+     */
+    @Delete({"<script>",
+            "DELETE FROM cloud_scrub_reports WHERE file_id IN ",
+            "<foreach collection='fileIds' item='fileId' open='(' separator=',' close=')'>#{fileId}</foreach>",
+            "</script>"})
+    int deleteReportsByFileIds(@Param("fileIds") Collection<Long> fileIds);
+
+    /**
+     * 教师所管理班级的报告，按最近发现时间倒序
+     */
+    @Select("SELECT r.id, r.file_id AS fileId, r.class_id AS classId, r.file_path AS filePath, r.content_hash AS contentHash, " +
+            "r.actual_hash AS actualHash, r.problem, r.first_detected_at AS firstDetectedAt, r.last_detected_at AS lastDetectedAt " +
+            "FROM cloud_scrub_reports r JOIN classes c ON r.class_id = c.id " +
+            "WHERE c.teacher_id = #{teacherId} " +
+            "ORDER BY r.last_detected_at DESC, r.id DESC LIMIT #{limit}")
+    List<CloudScrubReport> findRecentReports(@Param("teacherId") Long teacherId, @Param("limit") int limit);
+
+    @Select("SELECT COUNT(*) FROM cloud_scrub_reports r JOIN classes c ON r.class_id = c.id " +
+            "WHERE c.teacher_id = #{teacherId} AND r.problem = #{problem}")
+    long countReports(@Param("teacherId") Long teacherId, @Param("problem") String problem);
+}
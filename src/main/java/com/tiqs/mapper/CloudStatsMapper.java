@@ -0,0 +1,77 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 15:08:44
+ * @description CloudStatsMapper
+ */
+package com.tiqs.mapper;
+
+import com.tiqs.entity.CloudClassStats;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface CloudStatsMapper {
+
+    @Select("SELECT class_id AS classId, total_size AS totalSize, file_count AS fileCount, folder_count AS folderCount, " +
+            "updated_at AS updatedAt FROM cloud_class_stats WHERE class_id = #{classId}")
+    CloudClassStats findClassStats(@Param("classId") Long classId);
+
+    /**
+     * 首次使用时根据现有数据初始化班级统计行，已存在时忽略
+     */
+    @Insert("INSERT IGNORE INTO cloud_class_stats(class_id, total_size, file_count, folder_count, updated_at) " +
+            "SELECT #{classId}, " +
+            "(SELECT COALESCE(SUM(file_size), 0) FROM cloud_files WHERE class_id = #{classId}), " +
+            "(SELECT COUNT(*) FROM cloud_files WHERE class_id = #{classId}), " +
+            "(SELECT COUNT(*) FROM cloud_folders WHERE class_id = #{classId}), NOW()")
+    int seedClassStats(@Param("classId") Long classId);
+
+    /**
+     * 初始化班级下尚无统计行的文件夹
+     */
+    @Insert("INSERT IGNORE INTO cloud_folder_stats(folder_id, class_id, total_size, file_count, updated_at) " +
+            "SELECT fo.id, fo.class_id, COALESCE(SUM(f.file_size), 0), COUNT(f.id), NOW() " +
+            "FROM cloud_folders fo " +
+            "LEFT JOIN cloud_files f ON f.folder_id = fo.id " +
+            "WHERE fo.class_id = #{classId} " +
+            "GROUP BY fo.id, fo.class_id")
+    int seedFolderStats(@Param("classId") Long classId);
+
+    @Insert("INSERT IGNORE INTO cloud_folder_stats(folder_id, class_id, total_size, file_count, updated_at) " +
+            "VALUES(#{folderId}, #{classId}, 0, 0, NOW())")
+    int insertEmptyFolderStats(@Param("folderId") Long folderId, @Param("classId") Long classId);
+
+    /**
+     * 增量更新班级统计；统计行尚未初始化时不更新，初始化时会按实际数据计算
+     */
+    @Update("UPDATE cloud_class_stats SET total_size = total_size + #{sizeDelta}, file_count = file_count + #{fileDelta}, " +
+            "folder_count = folder_count + #{folderDelta}, updated_at = NOW() WHERE class_id = #{classId}")
+    int addClassStats(@Param("classId") Long classId, @Param("sizeDelta") long sizeDelta,
+                      @Param("fileDelta") int fileDelta, @Param("folderDelta") int folderDelta);
+
+    @Update("UPDATE cloud_folder_stats SET total_size = total_size + #{sizeDelta}, file_count = file_count + #{fileDelta}, " +
+            "updated_at = NOW() WHERE folder_id = #{folderId}")
+    int addFolderStats(@Param("folderId") Long folderId, @Param("sizeDelta") long sizeDelta, @Param("fileDelta") int fileDelta);
+
+    @Select("SELECT class_id FROM cloud_class_stats WHERE class_id > #{afterClassId} ORDER BY class_id LIMIT #{limit}")
+    List<Long> findClassIds(@Param("afterClassId") Long afterClassId, @Param("limit") int limit);
+
+    /**
+     * 按实际数据重新计算班级统计，单条语句内完成，与增量更新通过行锁串行
+     */
+    @Update("UPDATE cloud_class_stats s SET " +
+            "total_size = (SELECT COALESCE(SUM(f.file_size), 0) FROM cloud_files f WHERE f.class_id = s.class_id), " +
+            "file_count = (SELECT COUNT(*) FROM cloud_files f WHERE f.class_id = s.class_id), " +
+            "folder_count = (SELECT COUNT(*) FROM cloud_folders fo WHERE fo.class_id = s.class_id), " +
+            "updated_at = NOW() " +
+            "WHERE s.class_id = #{classId}")
+    int recomputeClassStats(@Param("classId") Long classId);
+
+    @Update("UPDATE cloud_folder_stats s SET " +
+            "total_size = (SELECT COALESCE(SUM(f.file_size), 0) FROM cloud_files f WHERE f.folder_id = s.folder_id), " +
+            "file_count = (SELECT COUNT(*) FROM cloud_files f WHERE f.folder_id = s.folder_id), " +
+            "updated_at = NOW() " +
+            "WHERE s.class_id = #{classId}")
+    int recomputeFolderStats(@Param("classId") Long classId);
+}
@@ -5,9 +5,11 @@
  */
 package com.tiqs.mapper;
 
+import com.tiqs.dto.CommentNode;
 import com.tiqs.entity.Comment;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -34,9 +36,65 @@ public interface CommentMapper {
             "ORDER BY c.created_at ASC")
     List<Comment> findByDiscussionId(Long discussionId);
 
+    /**
+     * 一次查询取出一页评论树：parentId 为空时起点为讨论下的顶层评论，否则为该评论的直接回复，
+     * 起点按 (created_at, id) 正序分页；再沿 (discussion_id, parent_id) 递归取回复，最多 maxDepth 层，
+     * 每个节点最多保留最早的 maxReplies 条直接回复。replyCount 为节点的直接回复总数，
+     * 与返回的回复数比较即可判断是否需要继续加载。结果按层级排序，父节点总在子节点之前。
+     */
+    @Select({"<script>",
+            "WITH RECURSIVE roots AS (",
+            "SELECT id, discussion_id, parent_id, content, author_id, is_edited, created_at, updated_at, 1 AS depth ",
+            "FROM comments ",
+            "<choose>",
+            "<when test='parentId != null'>WHERE parent_id = #{parentId}</when>",
+            "<otherwise>WHERE discussion_id = #{discussionId} AND parent_id IS NULL</otherwise>",
+            "</choose>",
+            "<if test='cursorTime != null and cursorId != null'>",
+            " AND (created_at &gt; #{cursorTime} OR (created_at = #{cursorTime} AND id &gt; #{cursorId}))",
+            "</if>",
+            " ORDER BY created_at, id LIMIT #{limit}",
+            "), tree AS (",
+            "SELECT * FROM roots ",
+            "UNION ALL ",
+            "SELECT c.id, c.discussion_id, c.parent_id, c.content, c.author_id, c.is_edited, c.created_at, c.updated_at, t.depth + 1 ",
+            "FROM tree t JOIN comments c ON c.discussion_id = t.discussion_id AND c.parent_id = t.id ",
+            "WHERE t.depth &lt; #{maxDepth}",
+            "), ranked AS (",
+            "SELECT t.*, ROW_NUMBER() OVER (PARTITION BY t.parent_id ORDER BY t.created_at, t.id) AS sibling_rank FROM tree t",
+            "), kept AS (",
+            "SELECT * FROM ranked WHERE depth = 1 ",
+            "UNION ALL ",
+            "SELECT r.* FROM kept k JOIN ranked r ON r.parent_id = k.id WHERE r.sibling_rank &lt;= #{maxReplies}",
+            ") ",
+            "SELECT k.id, k.parent_id AS parentId, k.content, k.author_id AS authorId, k.is_edited AS isEdited, ",
+            "k.created_at AS createdAt, k.updated_at AS updatedAt, k.depth, ",
+            "u.username AS authorName, u.role AS authorRole, ",
+            "(SELECT COUNT(*) FROM comments r WHERE r.discussion_id = k.discussion_id AND r.parent_id = k.id) AS replyCount ",
+            "FROM kept k ",
+            "LEFT JOIN users u ON k.author_id = u.id ",
+            "ORDER BY k.depth, k.created_at, k.id",
+            "</script>"})
+    List<CommentNode> findTree(@Param("discussionId") Long discussionId,
+                               @Param("parentId") Long parentId,
+                               @Param("cursorTime") LocalDateTime cursorTime,
+                               @Param("cursorId") Long cursorId,
+                               @Param("limit") int limit,
+                               @Param("maxDepth") int maxDepth,
+                               @Param("maxReplies") int maxReplies);
+
     @Update("UPDATE comments SET content=#{content}, is_edited=TRUE, updated_at=NOW() WHERE id=#{id}")
     int update(Comment comment);
 
+    /**
+     * 评论及其全部回复的数量（删除评论时回复通过外键级联删除）
+     */
+    @Select("WITH RECURSIVE subtree AS (" +
+            "SELECT id FROM comments WHERE id = #{id} " +
+            "UNION ALL SELECT c.id FROM comments c JOIN subtree s ON c.parent_id = s.id) " +
+            "SELECT COUNT(*) FROM subtree")
+    int countSubtree(Long id);
+
     @Delete("DELETE FROM comments WHERE id=#{id}")
     int delete(Long id);
 
@@ -8,7 +8,9 @@ package com.tiqs.mapper;
 import com.tiqs.entity.Discussion;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface DiscussionMapper {
@@ -18,34 +20,74 @@ public interface DiscussionMapper {
     int insert(Discussion discussion);
 
     @Select("SELECT d.id, d.class_id AS classId, d.title, d.content, d.author_id AS authorId, " +
-            "d.is_pinned AS isPinned, d.view_count AS viewCount, d.created_at AS createdAt, d.updated_at AS updatedAt, " +
-            "u.username AS authorName, COUNT(c.id) AS commentCount " +
+            "d.is_pinned AS isPinned, d.view_count AS viewCount, d.comment_count AS commentCount, " +
+            "d.created_at AS createdAt, d.updated_at AS updatedAt, u.username AS authorName " +
             "FROM discussions d " +
             "LEFT JOIN users u ON d.author_id = u.id " +
-            "LEFT JOIN comments c ON d.id = c.discussion_id " +
-            "WHERE d.id = #{id} " +
-            "GROUP BY d.id")
+            "WHERE d.id = #{id}")
     Discussion findById(Long id);
 
     @Select("SELECT d.id, d.class_id AS classId, d.title, d.content, d.author_id AS authorId, " +
-            "d.is_pinned AS isPinned, d.view_count AS viewCount, d.created_at AS createdAt, d.updated_at AS updatedAt, " +
-            "u.username AS authorName, COUNT(c.id) AS commentCount " +
+            "d.is_pinned AS isPinned, d.view_count AS viewCount, d.comment_count AS commentCount, " +
+            "d.created_at AS createdAt, d.updated_at AS updatedAt, u.username AS authorName " +
             "FROM discussions d " +
             "LEFT JOIN users u ON d.author_id = u.id " +
-            "LEFT JOIN comments c ON d.id = c.discussion_id " +
             "WHERE d.class_id = #{classId} " +
-            "GROUP BY d.id " +
-            "ORDER BY d.is_pinned DESC, d.updated_at DESC")
+            "ORDER BY d.is_pinned DESC, d.updated_at DESC, d.id DESC")
     List<Discussion> findByClassId(Long classId);
 
+    /**
+     * 按 (is_pinned, updated_at, id) 倒序的游标分页查询，cursorTime / cursorId 为空时查询第一页
+     */
+    @Select({"<script>",
+            "SELECT d.id, d.class_id AS classId, d.title, d.content, d.author_id AS authorId, ",
+            "d.is_pinned AS isPinned, d.view_count AS viewCount, d.comment_count AS commentCount, ",
+            "d.created_at AS createdAt, d.updated_at AS updatedAt, u.username AS authorName ",
+            "FROM discussions d ",
+            "LEFT JOIN users u ON d.author_id = u.id ",
+            "WHERE d.class_id = #{classId}",
+            "<if test='cursorTime != null and cursorId != null'>",
+            " AND (d.is_pinned &lt; #{cursorPinned} OR (d.is_pinned = #{cursorPinned} AND ",
+            "(d.updated_at &lt; #{cursorTime} OR (d.updated_at = #{cursorTime} AND d.id &lt; #{cursorId}))))",
+            "</if>",
+            " ORDER BY d.is_pinned DESC, d.updated_at DESC, d.id DESC ",
+            "LIMIT #{limit}",
+            "</script>"})
+    List<Discussion> findPage(@Param("classId") Long classId,
+                              @Param("cursorPinned") Boolean cursorPinned,
+                              @Param("cursorTime") LocalDateTime cursorTime,
+                              @Param("cursorId") Long cursorId,
+                              @Param("limit") int limit);
+
     @Update("UPDATE discussions SET title=#{title}, content=#{content}, updated_at=NOW() WHERE id=#{id}")
     int update(Discussion discussion);
 
     @Delete("DELETE FROM discussions WHERE id=#{id}")
     int delete(Long id);
 
-    @Update("UPDATE discussions SET view_count = view_count + 1 WHERE id = #{id}")
-    int incrementViewCount(Long id);
+    /**
+     * 批量累加浏览次数，保持 updated_at 不变（该列带 ON UPDATE CURRENT_TIMESTAMP）
+     */
+    @Update({"<script>",
+            "UPDATE discussions SET view_count = view_count + CASE id ",
+            "<foreach collection='deltas' index='discussionId' item='delta'>WHEN #{discussionId} THEN #{delta} </foreach>",
+            "ELSE 0 END, updated_at = updated_at WHERE id IN ",
+            "<foreach collection='deltas' index='discussionId' open='(' separator=',' close=')'>#{discussionId}</foreach>",
+            "</script>"})
+    int addViewCounts(@Param("deltas") Map<Long, Long> deltas);
+
+    /**
+     * 评论增删时调整评论数，保持 updated_at 不变
+     */
+    @Update("UPDATE discussions SET comment_count = GREATEST(comment_count + #{delta}, 0), updated_at = updated_at WHERE id = #{id}")
+    int addCommentCount(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 按实际评论重新计算评论数
+     */
+    @Update("UPDATE discussions SET comment_count = (SELECT COUNT(*) FROM comments WHERE discussion_id = #{id}), " +
+            "updated_at = updated_at WHERE id = #{id}")
+    int recountComments(Long id);
 
     @Update("UPDATE discussions SET is_pinned=#{isPinned}, updated_at=NOW() WHERE id=#{id}")
     int updatePinnedStatus(@Param("id") Long id, @Param("isPinned") Boolean isPinned);
@@ -0,0 +1,213 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:46:03
+ * @description ClassSearchIndex - 单个班级云盘文件与文件夹的内存倒排索引
+ */
+package com.tiqs.search;
+
+import com.tiqs.dto.CloudSearchHit;
+import com.tiqs.entity.CloudFile;
+import com.tiqs.entity.CloudFolder;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 词条 -> (文档 -> 权重) 的倒排表。名称中出现的词条权重高于描述中的词条，
+ * 查询时要求文档包含全部查询词条，按 Σ 权重 × idf 排序，名称完全匹配或前缀匹配额外加分。
+ * 读多写少，使用读写锁保护。
+ */
+public class ClassSearchIndex {
+
+    public static final String TYPE_FILE = "file";
+    public static final String TYPE_FOLDER = "folder";
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long createdAt = System.currentTimeMillis();
+
+    /**
+     * 索引中的一个文件或文件夹
+     */
+    private record Document(String type, Long id, String name, String normalizedName, String description,
+                            Long folderId, String path, String fileType, Long fileSize,
+                            LocalDateTime createdAt, Long uploaderId, boolean isPublic,
+                            Map<String, Float> terms) {
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 文件的所在路径取自已索引的文件夹，因此需先索引文件夹
+     */
+    public void putFile(CloudFile file) {
+        Map<String, Float> terms = weigh(file.getOriginalFileName(), file.getDescription());
+        lock.writeLock().lock();
+        try {
+            Document folder = file.getFolderId() != null ? documents.get(folderKey(file.getFolderId())) : null;
+            putLocked(fileKey(file.getId()), new Document(TYPE_FILE, file.getId(), file.getOriginalFileName(),
+                    normalize(file.getOriginalFileName()), file.getDescription(), file.getFolderId(),
+                    folder != null ? folder.path() : null, file.getFileType(), file.getFileSize(), file.getCreatedAt(),
+                    file.getUploaderId(), !Boolean.FALSE.equals(file.getIsPublic()), terms));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFolder(CloudFolder folder) {
+        Map<String, Float> terms = weigh(folder.getName(), null);
+        lock.writeLock().lock();
+        try {
+            putLocked(folderKey(folder.getId()), new Document(TYPE_FOLDER, folder.getId(), folder.getName(),
+                    normalize(folder.getName()), null, folder.getParentFolderId(), folder.getPath(),
+                    null, null, folder.getCreatedAt(), folder.getCreatorId(), true, terms));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFile(Long fileId) {
+        remove(fileKey(fileId));
+    }
+
+    /**
+     * @param type   只返回指定类型，null 表示不限
+     * @param userId 当前用户，他人的私有文件不返回
+     */
+    public List<CloudSearchHit> search(String keyword, String type, Long userId, int limit) {
+        Set<String> queryTerms = SearchTokenizer.queryTerms(keyword);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        String normalizedKeyword = normalize(keyword).trim();
+
+        lock.readLock().lock();
+        try {
+            // 从最短的倒排表开始求交集
+            List<Map<Long, Float>> lists = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Map<Long, Float> list = postings.get(term);
+                if (list == null) {
+                    return List.of();
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(Map::size));
+
+            int total = documents.size();
+            List<CloudSearchHit> hits = new ArrayList<>();
+            for (Map.Entry<Long, Float> candidate : lists.get(0).entrySet()) {
+                Long key = candidate.getKey();
+                double score = 0;
+                boolean matched = true;
+                for (Map<Long, Float> list : lists) {
+                    Float weight = list.get(key);
+                    if (weight == null) {
+                        matched = false;
+                        break;
+                    }
+                    score += weight * Math.log(1 + (double) total / list.size());
+                }
+                if (!matched) {
+                    continue;
+                }
+                Document doc = documents.get(key);
+                if (type != null && !type.equals(doc.type())) {
+                    continue;
+                }
+                if (!doc.isPublic() && !Objects.equals(doc.uploaderId(), userId)) {
+                    continue;
+                }
+                if (doc.normalizedName().equals(normalizedKeyword)) {
+                    score *= 2;
+                } else if (doc.normalizedName().startsWith(normalizedKeyword)) {
+                    score *= 1.5;
+                }
+                hits.add(new CloudSearchHit(doc.type(), doc.id(), doc.name(), doc.description(), doc.folderId(),
+                        doc.path(), doc.fileType(), doc.fileSize(), doc.createdAt(), score));
+            }
+            hits.sort(Comparator.comparingDouble(CloudSearchHit::getScore).reversed()
+                    .thenComparing(CloudSearchHit::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+            return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putLocked(Long key, Document doc) {
+        removeLocked(key);
+        documents.put(key, doc);
+        doc.terms().forEach((term, weight) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(key, weight));
+    }
+
+    private void remove(Long key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long key) {
+        Document existing = documents.remove(key);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.terms().keySet()) {
+            Map<Long, Float> list = postings.get(term);
+            if (list != null) {
+                list.remove(key);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static Map<String, Float> weigh(String name, String description) {
+        Map<String, Float> terms = new HashMap<>();
+        for (String term : SearchTokenizer.indexTerms(description)) {
+            terms.put(term, DESCRIPTION_WEIGHT);
+        }
+        for (String term : SearchTokenizer.indexTerms(name)) {
+            terms.merge(term, NAME_WEIGHT, Float::sum);
+        }
+        return terms;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+    }
+
+    private static Long fileKey(Long fileId) {
+        return fileId << 1;
+    }
+
+    private static Long folderKey(Long folderId) {
+        return (folderId << 1) | 1;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:46:03
+ * @description SearchTokenizer - 云盘搜索分词：中日韩文字按单字与双字切分，其他文字按单词及其前缀切分
+ */
+package com.tiqs.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 文件名中中文通常没有分隔符，按单字和相邻双字建立索引即可支持任意子串查询；
+ * 字母数字按单词切分，并为单词建立前缀词条以支持输入一半时的前缀匹配。
+ */
+public final class SearchTokenizer {
+
+    /**
+     * 单词前缀词条的最大长度，超过部分只能按完整单词匹配
+     */
+    private static final int MAX_PREFIX_LENGTH = 12;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 建立索引时的分词，包含单词前缀
+     */
+    public static Set<String> indexTerms(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 查询时的分词，文档需包含全部词条才算命中
+     */
+    public static Set<String> queryTerms(String text) {
+        return tokenize(text, false);
+    }
+
+    private static Set<String> tokenize(String text, boolean forIndex) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int start = i;
+                while (i < length && isCjk(normalized.codePointAt(i))) {
+                    i += Character.charCount(normalized.codePointAt(i));
+                }
+                addCjkTerms(normalized.substring(start, i), forIndex, terms);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < length) {
+                    int c = normalized.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) {
+                        break;
+                    }
+                    i += Character.charCount(c);
+                }
+                addWordTerms(normalized.substring(start, i), forIndex, terms);
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return terms;
+    }
+
+    private static void addCjkTerms(String run, boolean forIndex, Set<String> terms) {
+        int[] codePoints = run.codePoints().toArray();
+        if (codePoints.length == 1 || forIndex) {
+            // 单字词条用于单字查询，查询串只有一个字时才使用
+            for (int codePoint : codePoints) {
+                terms.add(new String(Character.toChars(codePoint)));
+            }
+        }
+        for (int j = 0; j + 1 < codePoints.length; j++) {
+            terms.add(new String(codePoints, j, 2));
+        }
+    }
+
+    private static void addWordTerms(String word, boolean forIndex, Set<String> terms) {
+        terms.add(word);
+        if (forIndex) {
+            int max = Math.min(word.length() - 1, MAX_PREFIX_LENGTH);
+            for (int end = 1; end <= max; end++) {
+                terms.add(word.substring(0, end));
+            }
+        } else if (word.length() > MAX_PREFIX_LENGTH) {
+            // 超长单词按最长前缀词条匹配
+            terms.remove(word);
+            terms.add(word.substring(0, MAX_PREFIX_LENGTH));
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:46:03
+ * @description CloudSearchService
+ */
+package com.tiqs.service;
+
+import com.tiqs.dto.CloudSearchHit;
+import com.tiqs.entity.CloudFile;
+import com.tiqs.entity.CloudFolder;
+
+import java.util.List;
+
+public interface CloudSearchService {
+
+    /**
+     * 按名称和描述搜索班级云盘中的文件和文件夹，按相关度排序
+     *
+     * @param type 可选，file 或 folder
+     */
+    List<CloudSearchHit> search(Long classId, String keyword, String type, Long userId, Integer limit);
+
+    /**
+     * 文件新增或修改后更新索引，在当前事务提交后生效
+     */
+    void fileSaved(CloudFile cloudFile);
+
+    void fileDeleted(CloudFile cloudFile);
+
+    void folderSaved(CloudFolder folder);
+
+    /**
+     * 文件夹移动、重命名或删除会影响多个文档，直接丢弃该班级的索引，下次查询时重建
+     */
+    void invalidate(Long classId);
+}
@@ -5,10 +5,17 @@
  */
 package com.tiqs.service;
 
+import com.tiqs.common.CursorPage;
+import com.tiqs.dto.CloudUploadSession;
 import com.tiqs.entity.CloudFile;
 import com.tiqs.entity.CloudFolder;
+import com.tiqs.storage.ContentSource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface CloudStorageService {
@@ -16,6 +23,31 @@ public interface CloudStorageService {
 
     CloudFile uploadFile(Long classId, Long uploaderId, MultipartFile file, String description, Boolean isPublic, Long folderId);
 
+    /**
+     * 流式上传：内容边读边嗅探文件头、计算哈希、检查大小并写入存储，不经过容器的临时文件
+     *
+     * @param content 文件内容，读取量超过大小上限时中止
+     */
+    CloudFile uploadFileStream(Long classId, Long uploaderId, String fileName, InputStream content, String description,
+                               Boolean isPublic, Long folderId);
+
+    /**
+     * 一次请求上传多个文件，单个文件的校验或写入失败不影响其他文件
+     */
+    BatchUploadResult uploadFiles(Long classId, Long uploaderId, List<MultipartFile> files, String description,
+                                  Boolean isPublic, Long folderId);
+
+    CloudUploadSession createUploadSession(Long classId, Long uploaderId, String fileName, Long fileSize, Integer chunkSize,
+                                           String description, Boolean isPublic, Long folderId);
+
+    CloudUploadSession getUploadSession(String sessionId, Long userId);
+
+    void uploadChunk(String sessionId, Integer chunkIndex, InputStream content, Long userId);
+
+    CloudFile commitUploadSession(String sessionId, Long userId);
+
+    void abortUploadSession(String sessionId, Long userId);
+
     List<CloudFile> listFilesByClass(Long classId);
 
     List<CloudFile> listFilesByClassAndType(Long classId, String fileType);
@@ -24,6 +56,12 @@ public interface CloudStorageService {
 
     List<CloudFile> listFilesByFolder(Long folderId);
 
+    /**
+     * 游标分页查询文件。指定 folderId 时按文件夹查询，否则按班级查询；uploaderId、fileType 为可选过滤条件
+     */
+    CursorPage<CloudFile> listFilesPage(Long classId, Long folderId, Long uploaderId, String fileType,
+                                        String cursor, Integer pageSize);
+
     CloudFile moveFile(Long fileId, Long folderId, Long userId);
 
     CloudFile getFile(Long id);
@@ -32,7 +70,17 @@ public interface CloudStorageService {
 
     void deleteFile(Long id, Long userId);
 
-    byte[] downloadFile(Long id, Long userId);
+    CloudFileDownload downloadFile(Long id, Long userId);
+
+    /**
+     * 校验下载权限后签发短期有效的下载链接
+     */
+    DownloadUrl createDownloadUrl(Long id, Long userId, boolean priority);
+
+    /**
+     * 获取图片 / PDF 的缩略图，尚未生成时排队生成并返回 404
+     */
+    CloudFileDownload getThumbnail(Long id, Long userId);
 
     CloudFileStatistics getFileStatistics(Long classId);
 
@@ -62,6 +110,23 @@ public interface CloudStorageService {
 
     CloudFolderStatistics getFolderStatistics(Long classId);
 
+    void writeFolderZip(CloudFolder folder, Long userId, OutputStream out) throws IOException;
+
+
+    /**
+     * 按请求中的顺序返回每个文件的结果，成功时 file 非空，失败时 error 为原因
+     */
+    record BatchUploadItem(String fileName, CloudFile file, String error) {
+    }
+
+    record BatchUploadResult(int successCount, int failureCount, List<BatchUploadItem> items) {
+    }
+
+    record CloudFileDownload(CloudFile file, ContentSource content) {
+    }
+
+    record DownloadUrl(String url, LocalDateTime expiresAt) {
+    }
 
     record CloudFileStatistics(Long totalSize, Integer fileCount) {
         public String getFormattedTotalSize() {
@@ -5,6 +5,8 @@
  */
 package com.tiqs.service;
 
+import com.tiqs.common.CursorPage;
+import com.tiqs.dto.CommentNode;
 import com.tiqs.entity.Comment;
 
 import java.util.List;
@@ -14,6 +16,20 @@ public interface CommentService {
 
     List<Comment> listByDiscussion(Long discussionId);
 
+    /**
+     * 按顶层评论分页返回评论树，每个顶层评论最多展开 maxDepth 层回复
+     *
+     * @param cursor 上一页返回的 nextCursor，为空时查询第一页
+     */
+    CursorPage<CommentNode> listTree(Long discussionId, String cursor, Integer pageSize, Integer maxDepth);
+
+    /**
+     * 分页加载某条评论的直接回复（及其限定层级内的子回复），用于继续加载被截断的回复
+     *
+     * @param cursor 上一页返回的 nextCursor 或节点的 repliesCursor，为空时从第一条回复开始
+     */
+    CursorPage<CommentNode> listReplies(Long commentId, String cursor, Integer pageSize, Integer maxDepth);
+
     Comment update(Comment comment);
 
     void delete(Long id, Long userId);
@@ -5,6 +5,7 @@
  */
 package com.tiqs.service;
 
+import com.tiqs.common.CursorPage;
 import com.tiqs.entity.Discussion;
 
 import java.util.List;
@@ -14,6 +15,13 @@ public interface DiscussionService {
 
     List<Discussion> listByClass(Long classId);
 
+    /**
+     * 游标分页查询班级讨论，置顶在前，其余按更新时间倒序
+     *
+     * @param cursor 上一页返回的 nextCursor，为空时查询第一页
+     */
+    CursorPage<Discussion> listByClassPage(Long classId, String cursor, Integer pageSize);
+
     Discussion get(Long id);
 
     Discussion update(Discussion discussion);
@@ -0,0 +1,161 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:46:03
+ * @description CloudSearchServiceImpl - 按班级懒加载的云盘内存搜索索引
+ */
+package com.tiqs.service.impl;
+
+import com.tiqs.common.BusinessException;
+import com.tiqs.dto.CloudSearchHit;
+import com.tiqs.entity.CloudFile;
+import com.tiqs.entity.CloudFolder;
+import com.tiqs.mapper.CloudFileMapper;
+import com.tiqs.mapper.CloudFolderMapper;
+import com.tiqs.search.ClassSearchIndex;
+import com.tiqs.service.CloudSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 班级首次搜索时从数据库加载全部文件和文件夹建立索引，之后的写操作在事务提交后增量更新索引。
+ * 索引超过 TTL 后重建，用于修正多实例部署等情况下遗漏的更新。
+ * 与 {@link FolderTreeCache} 相同，通过版本号避免加载期间发生的变更被旧数据覆盖。
+ */
+@Slf4j
+@Service
+public class CloudSearchServiceImpl implements CloudSearchService {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    private final CloudFileMapper cloudFileMapper;
+    private final CloudFolderMapper cloudFolderMapper;
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+    private final Map<Long, ClassSearchIndex> indexes;
+    private final long ttlMillis;
+
+    public CloudSearchServiceImpl(CloudFileMapper cloudFileMapper, CloudFolderMapper cloudFolderMapper,
+                                  @Value("${cloud.search.max-classes:500}") int maxClasses,
+                                  @Value("${cloud.search.index-ttl-minutes:30}") long ttlMinutes) {
+        this.cloudFileMapper = cloudFileMapper;
+        this.cloudFolderMapper = cloudFolderMapper;
+        this.ttlMillis = Duration.ofMinutes(ttlMinutes).toMillis();
+        this.indexes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ClassSearchIndex> eldest) {
+                return size() > maxClasses;
+            }
+        });
+    }
+
+    @Override
+    public List<CloudSearchHit> search(Long classId, String keyword, String type, Long userId, Integer limit) {
+        if (keyword == null || keyword.isBlank()) {
+            throw BusinessException.of(400, "搜索关键词不能为空");
+        }
+        if (type != null && !ClassSearchIndex.TYPE_FILE.equals(type) && !ClassSearchIndex.TYPE_FOLDER.equals(type)) {
+            throw BusinessException.of(400, "type 只能为 file 或 folder");
+        }
+        int size = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+
+        long start = System.nanoTime();
+        List<CloudSearchHit> hits = index(classId).search(keyword, type, userId, size);
+        log.debug("云盘搜索 classId={} keyword={} hits={} 耗时={}us", classId, keyword, hits.size(),
+                (System.nanoTime() - start) / 1000);
+        return hits;
+    }
+
+    @Override
+    public void fileSaved(CloudFile cloudFile) {
+        afterCommit(cloudFile.getClassId(), index -> index.putFile(cloudFile));
+    }
+
+    @Override
+    public void fileDeleted(CloudFile cloudFile) {
+        afterCommit(cloudFile.getClassId(), index -> index.removeFile(cloudFile.getId()));
+    }
+
+    @Override
+    public void folderSaved(CloudFolder folder) {
+        afterCommit(folder.getClassId(), index -> index.putFolder(folder));
+    }
+
+    @Override
+    public void invalidate(Long classId) {
+        bump(classId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump(classId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 事务提交后更新已加载的索引；索引未加载时只递增版本号，使正在进行的加载结果不被缓存
+     */
+    private void afterCommit(Long classId, Consumer<ClassSearchIndex> update) {
+        Runnable apply = () -> {
+            ClassSearchIndex current = indexes.get(classId);
+            if (current != null) {
+                update.accept(current);
+            } else {
+                versions.merge(classId, 1L, Long::sum);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private void bump(Long classId) {
+        versions.merge(classId, 1L, Long::sum);
+        indexes.remove(classId);
+    }
+
+    private ClassSearchIndex index(Long classId) {
+        long version = versions.getOrDefault(classId, 0L);
+        ClassSearchIndex cached = indexes.get(classId);
+        if (cached != null && System.currentTimeMillis() - cached.createdAt() < ttlMillis) {
+            return cached;
+        }
+
+        long start = System.currentTimeMillis();
+        ClassSearchIndex index = new ClassSearchIndex();
+        // 先加载文件夹，文件的所在路径从已索引的文件夹中取得
+        for (CloudFolder folder : cloudFolderMapper.findAllByClassId(classId)) {
+            index.putFolder(folder);
+        }
+        for (CloudFile file : cloudFileMapper.findSearchDocsByClassId(classId)) {
+            index.putFile(file);
+        }
+
+        synchronized (indexes) {
+            if (versions.getOrDefault(classId, 0L) == version) {
+                indexes.put(classId, index);
+            }
+        }
+        log.info("建立云盘搜索索引 classId={} documents={} 耗时={}ms", classId, index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+}
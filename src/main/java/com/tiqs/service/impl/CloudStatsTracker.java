@@ -0,0 +1,162 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 15:08:44
+ * @description CloudStatsTracker - 班级 / 文件夹云盘统计的增量维护与后台校准
+ */
+package com.tiqs.service.impl;
+
+import com.tiqs.entity.CloudClassStats;
+import com.tiqs.entity.CloudFile;
+import com.tiqs.entity.CloudFolder;
+import com.tiqs.mapper.CloudStatsMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件上传、移动、删除时在同一事务内对统计行做增量更新，读取统计只需按主键查一行。
+ * 统计行在班级首次读取统计时按现有数据初始化（同时初始化该班级的文件夹统计），
+ * 初始化之前的增量更新不会命中任何行，因此不会重复计算。
+ * 后台任务定期按实际数据重新计算，修正初始化期间并发写入等原因产生的偏差。
+ */
+@Slf4j
+@Component
+public class CloudStatsTracker {
+
+    private static final int RECONCILE_BATCH_SIZE = 200;
+
+    private final CloudStatsMapper cloudStatsMapper;
+    private final FolderTreeCache folderTreeCache;
+
+    /**
+     * 已确认初始化过统计行的班级，避免每次读取文件夹树都查询一次
+     */
+    private final Set<Long> seededClasses = ConcurrentHashMap.newKeySet();
+
+    public CloudStatsTracker(CloudStatsMapper cloudStatsMapper, FolderTreeCache folderTreeCache) {
+        this.cloudStatsMapper = cloudStatsMapper;
+        this.folderTreeCache = folderTreeCache;
+    }
+
+    /**
+     * 读取班级统计，尚未初始化时先初始化。不能在只读事务内调用
+     */
+    public CloudClassStats getClassStats(Long classId) {
+        CloudClassStats stats = cloudStatsMapper.findClassStats(classId);
+        if (stats == null) {
+            ensureSeeded(classId);
+            stats = cloudStatsMapper.findClassStats(classId);
+        }
+        return stats != null ? stats : new CloudClassStats(classId, 0L, 0, 0, null);
+    }
+
+    /**
+     * 确保班级及其文件夹的统计行已初始化，不能在只读事务内调用
+     */
+    public void ensureSeeded(Long classId) {
+        if (seededClasses.contains(classId)) {
+            return;
+        }
+        if (cloudStatsMapper.findClassStats(classId) == null) {
+            cloudStatsMapper.seedFolderStats(classId);
+            cloudStatsMapper.seedClassStats(classId);
+            log.info("初始化云盘统计 classId={}", classId);
+        }
+        seededClasses.add(classId);
+    }
+
+    public void fileAdded(CloudFile cloudFile) {
+        applyFile(cloudFile.getClassId(), cloudFile.getFolderId(), cloudFile.getFileSize(), 1);
+    }
+
+    public void fileRemoved(CloudFile cloudFile) {
+        applyFile(cloudFile.getClassId(), cloudFile.getFolderId(), -cloudFile.getFileSize(), -1);
+    }
+
+    public void fileMoved(CloudFile cloudFile, Long fromFolderId, Long toFolderId) {
+        if (Objects.equals(fromFolderId, toFolderId)) {
+            return;
+        }
+        long size = cloudFile.getFileSize();
+        if (fromFolderId != null) {
+            cloudStatsMapper.addFolderStats(fromFolderId, -size, -1);
+        }
+        if (toFolderId != null) {
+            cloudStatsMapper.addFolderStats(toFolderId, size, 1);
+        }
+    }
+
+    public void folderCreated(CloudFolder folder) {
+        cloudStatsMapper.insertEmptyFolderStats(folder.getId(), folder.getClassId());
+        cloudStatsMapper.addClassStats(folder.getClassId(), 0, 0, 1);
+    }
+
+    /**
+     * 文件夹及其文件被删除后扣减班级统计，文件夹统计行随文件夹级联删除
+     */
+    public void folderContentsRemoved(Long classId, long removedSize, int removedFiles, int removedFolders) {
+        cloudStatsMapper.addClassStats(classId, -removedSize, -removedFiles, -removedFolders);
+    }
+
+    private void applyFile(Long classId, Long folderId, long sizeDelta, int fileDelta) {
+        cloudStatsMapper.addClassStats(classId, sizeDelta, fileDelta, 0);
+        if (folderId != null) {
+            cloudStatsMapper.addFolderStats(folderId, sizeDelta, fileDelta);
+        }
+    }
+
+    /**
+     * 按实际数据校准所有已初始化的统计，每个班级两条语句，互不持有长事务
+     */
+    @Scheduled(fixedDelayString = "${cloud.stats.reconcile-interval-ms:3600000}",
+            initialDelayString = "${cloud.stats.reconcile-initial-delay-ms:600000}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        int classes = 0;
+        int drifted = 0;
+        try {
+            Long after = 0L;
+            List<Long> classIds;
+            do {
+                classIds = cloudStatsMapper.findClassIds(after, RECONCILE_BATCH_SIZE);
+                for (Long classId : classIds) {
+                    if (reconcileClass(classId)) {
+                        drifted++;
+                    }
+                    classes++;
+                    after = classId;
+                }
+            } while (classIds.size() == RECONCILE_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("云盘统计校准失败，下次重试 reconciled={}", classes, e);
+            return;
+        }
+        log.info("云盘统计校准完成 classes={} drifted={} 耗时={}ms", classes, drifted, System.currentTimeMillis() - start);
+    }
+
+    private boolean reconcileClass(Long classId) {
+        CloudClassStats before = cloudStatsMapper.findClassStats(classId);
+        cloudStatsMapper.seedFolderStats(classId);
+        cloudStatsMapper.recomputeFolderStats(classId);
+        cloudStatsMapper.recomputeClassStats(classId);
+        CloudClassStats after = cloudStatsMapper.findClassStats(classId);
+        folderTreeCache.invalidate(classId);
+        if (before == null || after == null) {
+            return false;
+        }
+        boolean drifted = !Objects.equals(before.getTotalSize(), after.getTotalSize())
+                || !Objects.equals(before.getFileCount(), after.getFileCount())
+                || !Objects.equals(before.getFolderCount(), after.getFolderCount());
+        if (drifted) {
+            log.warn("云盘统计存在偏差，已校准 classId={} totalSize {} -> {} fileCount {} -> {} folderCount {} -> {}",
+                    classId, before.getTotalSize(), after.getTotalSize(), before.getFileCount(), after.getFileCount(),
+                    before.getFolderCount(), after.getFolderCount());
+        }
+        return drifted;
+    }
+}
@@ -6,42 +6,120 @@
 package com.tiqs.service.impl;
 
 import com.tiqs.common.BusinessException;
+import com.tiqs.common.CursorPage;
+import com.tiqs.common.PageCursor;
+import com.tiqs.dto.CloudSearchHit;
+import com.tiqs.dto.CloudUploadSession;
+import com.tiqs.entity.CloudBlob;
+import com.tiqs.entity.CloudClassStats;
 import com.tiqs.entity.CloudFile;
 import com.tiqs.entity.CloudFolder;
 import com.tiqs.mapper.CloudFileMapper;
 import com.tiqs.mapper.CloudFolderMapper;
+import com.tiqs.search.ClassSearchIndex;
+import com.tiqs.service.CloudSearchService;
 import com.tiqs.service.CloudStorageService;
+import com.tiqs.storage.ContentSource;
+import com.tiqs.storage.ContentStore;
+import com.tiqs.storage.ContentStore.StagedContent;
+import com.tiqs.storage.DownloadUrlSigner;
+import com.tiqs.storage.DownloadUrlSigner.SignedDownload;
+import com.tiqs.storage.HotFileCache;
+import com.tiqs.storage.StagingExecutor;
+import com.tiqs.storage.ThumbnailGenerator;
+import com.tiqs.storage.UploadInspector;
+import com.tiqs.storage.UploadInspector.RejectedUploadException;
+import com.tiqs.storage.UploadSessionStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @Service
 @Transactional(readOnly = true)
 public class CloudStorageServiceImpl implements CloudStorageService {
 
+    private static final long MAX_FILE_SIZE = 100 * 1024 * 1024;
+    private static final int DEFAULT_CHUNK_SIZE = 5 * 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 32 * 1024 * 1024;
+    private static final int DELETE_BATCH_SIZE = 500;
+    private static final int MAX_FOLDER_SEARCH_RESULTS = 100;
+
+    /**
+     * 本身已压缩的文件类型，打包时不再压缩
+     */
+    private static final Set<String> COMPRESSED_FILE_TYPES = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "heic",
+            "mp3", "aac", "m4a", "ogg", "mp4", "m4v", "mov", "avi", "mkv", "webm",
+            "zip", "rar", "7z", "gz", "tgz", "bz2", "xz", "zst",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "pdf", "epub"
+    );
+
     private final CloudFileMapper cloudFileMapper;
     private final CloudFolderMapper cloudFolderMapper;
-
-    @Value("${file.upload-dir:uploads}")
-    private String uploadDir;
-
-    public CloudStorageServiceImpl(CloudFileMapper cloudFileMapper, CloudFolderMapper cloudFolderMapper) {
+    private final UploadSessionStore uploadSessionStore;
+    private final ContentStore contentStore;
+    private final DownloadCountBuffer downloadCountBuffer;
+    private final CloudStatsTracker cloudStatsTracker;
+    private final FolderTreeCache folderTreeCache;
+    private final CloudSearchService cloudSearchService;
+    private final ThumbnailGenerator thumbnailGenerator;
+    private final StorageQuotaManager storageQuotaManager;
+    private final DownloadUrlSigner downloadUrlSigner;
+    private final StagingExecutor stagingExecutor;
+    private final HotFileCache hotFileCache;
+
+    @Value("${cloud.upload.max-batch-files:50}")
+    private int maxBatchFiles;
+
+    public CloudStorageServiceImpl(CloudFileMapper cloudFileMapper, CloudFolderMapper cloudFolderMapper,
+                                   UploadSessionStore uploadSessionStore, ContentStore contentStore,
+                                   DownloadCountBuffer downloadCountBuffer, CloudStatsTracker cloudStatsTracker,
+                                   FolderTreeCache folderTreeCache, CloudSearchService cloudSearchService,
+                                   ThumbnailGenerator thumbnailGenerator, StorageQuotaManager storageQuotaManager,
+                                   DownloadUrlSigner downloadUrlSigner, StagingExecutor stagingExecutor,
+                                   HotFileCache hotFileCache) {
         this.cloudFileMapper = cloudFileMapper;
         this.cloudFolderMapper = cloudFolderMapper;
+        this.uploadSessionStore = uploadSessionStore;
+        this.contentStore = contentStore;
+        this.downloadCountBuffer = downloadCountBuffer;
+        this.cloudStatsTracker = cloudStatsTracker;
+        this.folderTreeCache = folderTreeCache;
+        this.cloudSearchService = cloudSearchService;
+        this.thumbnailGenerator = thumbnailGenerator;
+        this.storageQuotaManager = storageQuotaManager;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.stagingExecutor = stagingExecutor;
+        this.hotFileCache = hotFileCache;
     }
 
     // --- File Operations ---
@@ -53,15 +131,252 @@ public class CloudStorageServiceImpl implements CloudStorageService {
             throw BusinessException.of(400, "文件不能为空");
         }
 
+        String originalFileName = file.getOriginalFilename();
+        String fileExtension = validateUpload(originalFileName, file.getSize());
+        // 写入磁盘前预占配额，事务回滚时自动归还
+        storageQuotaManager.reserve(classId, uploaderId, file.getSize());
+
+        StagedContent staged = null;
+        try {
+            // 写入暂存区并同时计算内容哈希，相同内容只保留一份物理文件
+            staged = contentStore.stage(file.getInputStream(), file.getSize());
+            CloudFile cloudFile = saveStagedFile(staged, classId, uploaderId, originalFileName, fileExtension,
+                    description, isPublic, folderId);
+
+            log.info("文件上传成功 classId={} uploaderId={} fileName={} hash={}", classId, uploaderId, originalFileName, staged.contentHash());
+            return cloudFileMapper.findById(cloudFile.getId());
+
+        } catch (IOException e) {
+            log.error("文件上传失败", e);
+            throw BusinessException.of(500, "文件上传失败：" + e.getMessage());
+        } finally {
+            contentStore.discard(staged);
+        }
+    }
+
+    @Transactional
+    @Override
+    public CloudFile uploadFileStream(Long classId, Long uploaderId, String fileName, InputStream content, String description,
+                                      Boolean isPublic, Long folderId) {
+        // 文件名、扩展名和剩余空间在读取内容之前检查，大小未知时只拒绝空间已满的情况
+        String fileExtension = validateUpload(fileName, 0);
+        storageQuotaManager.check(classId, uploaderId, 1);
+
+        StagedContent staged = null;
+        try {
+            staged = contentStore.stage(UploadInspector.inspect(content, fileExtension, MAX_FILE_SIZE), -1);
+            storageQuotaManager.reserve(classId, uploaderId, staged.size());
+            CloudFile cloudFile = saveStagedFile(staged, classId, uploaderId, fileName, fileExtension,
+                    description, isPublic, folderId);
+
+            log.info("文件流式上传成功 classId={} uploaderId={} fileName={} size={} hash={}", classId, uploaderId, fileName,
+                    staged.size(), staged.contentHash());
+            return cloudFileMapper.findById(cloudFile.getId());
+
+        } catch (RejectedUploadException e) {
+            log.info("拒绝流式上传 classId={} uploaderId={} fileName={}: {}", classId, uploaderId, fileName, e.getMessage());
+            throw BusinessException.of(e.getCode(), e.getMessage());
+        } catch (IOException e) {
+            log.error("文件上传失败", e);
+            throw BusinessException.of(500, "文件上传失败：" + e.getMessage());
+        } finally {
+            contentStore.discard(staged);
+        }
+    }
+
+    @Transactional
+    @Override
+    public BatchUploadResult uploadFiles(Long classId, Long uploaderId, List<MultipartFile> files, String description,
+                                         Boolean isPublic, Long folderId) {
+        if (files == null || files.isEmpty()) {
+            throw BusinessException.of(400, "请选择要上传的文件");
+        }
+        if (files.size() > maxBatchFiles) {
+            throw BusinessException.of(400, "单次最多上传" + maxBatchFiles + "个文件");
+        }
+
+        int count = files.size();
+        String[] extensions = new String[count];
+        String[] errors = new String[count];
+        List<CompletableFuture<StagedContent>> futures = new ArrayList<>(Collections.nCopies(count, null));
+        // 先做不占空间的校验，再把通过的文件并发写入暂存区
+        for (int i = 0; i < count; i++) {
+            MultipartFile file = files.get(i);
+            try {
+                if (file.isEmpty()) {
+                    throw BusinessException.of(400, "文件不能为空");
+                }
+                extensions[i] = validateUpload(file.getOriginalFilename(), file.getSize());
+                storageQuotaManager.check(classId, uploaderId, file.getSize());
+                futures.set(i, stagingExecutor.stage(file::getInputStream, file.getSize()));
+            } catch (BusinessException e) {
+                errors[i] = e.getMessage();
+            }
+        }
+
+        StagedContent[] staged = new StagedContent[count];
+        for (int i = 0; i < count; i++) {
+            if (futures.get(i) == null) {
+                continue;
+            }
+            try {
+                staged[i] = futures.get(i).join();
+            } catch (CompletionException e) {
+                log.warn("批量上传写入失败 fileName={}: {}", files.get(i).getOriginalFilename(), e.getCause().toString());
+                errors[i] = "文件写入失败";
+            }
+        }
+
+        try {
+            List<CloudFile> saved = new ArrayList<>();
+            int[] savedIndexes = new int[count];
+            for (int i = 0; i < count; i++) {
+                if (staged[i] == null) {
+                    continue;
+                }
+                try {
+                    storageQuotaManager.reserve(classId, uploaderId, staged[i].size());
+                } catch (BusinessException e) {
+                    errors[i] = e.getMessage();
+                    continue;
+                }
+                String filePath = contentStore.commit(staged[i]);
+                savedIndexes[saved.size()] = i;
+                saved.add(newCloudFile(staged[i], filePath, classId, uploaderId, files.get(i).getOriginalFilename(),
+                        extensions[i], description, isPublic, folderId));
+            }
+
+            CloudFile[] results = new CloudFile[count];
+            if (!saved.isEmpty()) {
+                cloudFileMapper.insertBatch(saved);
+                saved.forEach(this::fileSaved);
+                Map<Long, CloudFile> listing = new HashMap<>();
+                for (CloudFile cloudFile : cloudFileMapper.findByIds(saved.stream().map(CloudFile::getId).toList())) {
+                    listing.put(cloudFile.getId(), cloudFile);
+                }
+                for (int j = 0; j < saved.size(); j++) {
+                    results[savedIndexes[j]] = listing.getOrDefault(saved.get(j).getId(), saved.get(j));
+                }
+            }
+
+            List<BatchUploadItem> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(new BatchUploadItem(files.get(i).getOriginalFilename(), results[i], results[i] == null ? errors[i] : null));
+            }
+            log.info("批量上传完成 classId={} uploaderId={} 成功={} 失败={}", classId, uploaderId, saved.size(), count - saved.size());
+            return new BatchUploadResult(saved.size(), count - saved.size(), items);
+
+        } catch (IOException e) {
+            log.error("批量上传失败", e);
+            throw BusinessException.of(500, "文件上传失败：" + e.getMessage());
+        } finally {
+            for (StagedContent content : staged) {
+                contentStore.discard(content);
+            }
+        }
+    }
+
+    @Override
+    public CloudUploadSession createUploadSession(Long classId, Long uploaderId, String fileName, Long fileSize, Integer chunkSize,
+                                                  String description, Boolean isPublic, Long folderId) {
+        if (fileSize == null || fileSize <= 0) {
+            throw BusinessException.of(400, "文件不能为空");
+        }
+        validateUpload(fileName, fileSize);
+        storageQuotaManager.check(classId, uploaderId, fileSize);
+
+        int size = chunkSize != null ? chunkSize : DEFAULT_CHUNK_SIZE;
+        if (size < MIN_CHUNK_SIZE || size > MAX_CHUNK_SIZE) {
+            throw BusinessException.of(400, "分片大小需在256KB到32MB之间");
+        }
+
+        CloudUploadSession session = new CloudUploadSession();
+        session.setClassId(classId);
+        session.setUploaderId(uploaderId);
+        session.setFolderId(folderId);
+        session.setFileName(fileName);
+        session.setFileSize(fileSize);
+        session.setChunkSize(size);
+        session.setDescription(description);
+        session.setIsPublic(isPublic != null ? isPublic : true);
+
+        CloudUploadSession created = uploadSessionStore.create(session);
+        log.info("创建分片上传会话 sessionId={} classId={} uploaderId={} fileName={} fileSize={} totalChunks={}",
+                created.getSessionId(), classId, uploaderId, fileName, fileSize, created.getTotalChunks());
+        return created;
+    }
+
+    @Override
+    public CloudUploadSession getUploadSession(String sessionId, Long userId) {
+        return getOwnedSession(sessionId, userId);
+    }
+
+    @Override
+    public void uploadChunk(String sessionId, Integer chunkIndex, InputStream content, Long userId) {
+        CloudUploadSession session = getOwnedSession(sessionId, userId);
+        if (chunkIndex == null || chunkIndex < 0 || chunkIndex >= session.getTotalChunks()) {
+            throw BusinessException.of(400, "分片序号超出范围");
+        }
+        try {
+            uploadSessionStore.writeChunk(session, chunkIndex, content);
+        } catch (IOException e) {
+            log.warn("分片写入失败 sessionId={} chunkIndex={}: {}", sessionId, chunkIndex, e.getMessage());
+            throw BusinessException.of(500, "分片上传失败，请重试");
+        }
+        log.debug("分片上传成功 sessionId={} chunkIndex={}", sessionId, chunkIndex);
+    }
+
+    @Transactional
+    @Override
+    public CloudFile commitUploadSession(String sessionId, Long userId) {
+        CloudUploadSession session = getOwnedSession(sessionId, userId);
+        if (session.getUploadedChunks().size() != session.getTotalChunks()) {
+            throw BusinessException.of(400, "分片未全部上传，已完成 " + session.getUploadedChunks().size() + "/" + session.getTotalChunks());
+        }
+
+        String fileExtension = getFileExtension(session.getFileName()).toLowerCase();
+        storageQuotaManager.reserve(session.getClassId(), session.getUploaderId(), session.getFileSize());
+        try {
+            // 数据文件已按偏移量组装完成，计算哈希后直接移动到最终位置，无需再复制一次
+            StagedContent staged = contentStore.stageFile(uploadSessionStore.dataFile(sessionId));
+            CloudFile cloudFile = saveStagedFile(staged, session.getClassId(), session.getUploaderId(), session.getFileName(),
+                    fileExtension, session.getDescription(), session.getIsPublic(), session.getFolderId());
+            uploadSessionStore.delete(sessionId);
+
+            log.info("分片上传完成 sessionId={} fileId={} fileName={} hash={}", sessionId, cloudFile.getId(), session.getFileName(), staged.contentHash());
+            return cloudFileMapper.findById(cloudFile.getId());
+        } catch (IOException e) {
+            log.error("分片上传提交失败 sessionId={}", sessionId, e);
+            throw BusinessException.of(500, "文件上传失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void abortUploadSession(String sessionId, Long userId) {
+        getOwnedSession(sessionId, userId);
+        uploadSessionStore.delete(sessionId);
+        log.info("取消分片上传会话 sessionId={} userId={}", sessionId, userId);
+    }
+
+    private CloudUploadSession getOwnedSession(String sessionId, Long userId) {
+        CloudUploadSession session = uploadSessionStore.get(sessionId);
+        if (!session.getUploaderId().equals(userId)) {
+            throw BusinessException.of(403, "无权限操作此上传会话");
+        }
+        return session;
+    }
+
+    /**
+     * 校验上传文件名与大小，返回小写扩展名
+     */
+    private String validateUpload(String originalFileName, long size) {
         // 检查文件大小限制 (100MB)
-        long maxSize = 100 * 1024 * 1024;
-        if (file.getSize() > maxSize) {
+        if (size > MAX_FILE_SIZE) {
             throw BusinessException.of(413, "文件大小超出限制，最大支持100MB");
         }
 
         // 检查文件类型
-        String originalFileName = file.getOriginalFilename();
-        if (originalFileName == null) {
+        if (originalFileName == null || originalFileName.isBlank()) {
             throw BusinessException.of(400, "文件名不能为空");
         }
 
@@ -70,68 +385,88 @@ public class CloudStorageServiceImpl implements CloudStorageService {
         if (isDangerousFileType(fileExtension)) {
             throw BusinessException.of(400, "不允许上传此类型的文件");
         }
+        return fileExtension;
+    }
 
-        try {
-            // 创建云盘目录
-            String cloudDir = uploadDir + "/cloud/" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-            Path cloudPath = Paths.get(cloudDir);
-            if (!Files.exists(cloudPath)) {
-                Files.createDirectories(cloudPath);
-            }
+    /**
+     * 登记暂存内容并创建 cloud_files 记录
+     */
+    private CloudFile saveStagedFile(StagedContent staged, Long classId, Long uploaderId, String originalFileName,
+                                     String fileExtension, String description, Boolean isPublic, Long folderId) throws IOException {
+        CloudFile cloudFile = newCloudFile(staged, contentStore.commit(staged), classId, uploaderId, originalFileName,
+                fileExtension, description, isPublic, folderId);
+        cloudFileMapper.insert(cloudFile);
+        fileSaved(cloudFile);
+        return cloudFile;
+    }
 
-            // 生成唯一文件名
-            String uniqueFileName = UUID.randomUUID() + "." + fileExtension;
-            Path filePath = cloudPath.resolve(uniqueFileName);
-
-            // 保存文件
-            Files.copy(file.getInputStream(), filePath);
-
-            // 创建数据库记录
-            CloudFile cloudFile = new CloudFile();
-            cloudFile.setClassId(classId);
-            cloudFile.setFileName(uniqueFileName);
-            cloudFile.setOriginalFileName(originalFileName);
-            cloudFile.setFilePath("/cloud/" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd")) + "/" + uniqueFileName);
-            cloudFile.setFileSize(file.getSize());
-            cloudFile.setFileType(fileExtension);
-            cloudFile.setDescription(description);
-            cloudFile.setUploaderId(uploaderId);
-            cloudFile.setDownloadCount(0);
-            cloudFile.setIsPublic(isPublic != null ? isPublic : true);
-            cloudFile.setFolderId(folderId);
-
-            cloudFileMapper.insert(cloudFile);
-
-            log.info("文件上传成功 classId={} uploaderId={} fileName={}", classId, uploaderId, originalFileName);
-            return cloudFileMapper.findById(cloudFile.getId());
+    private CloudFile newCloudFile(StagedContent staged, String filePath, Long classId, Long uploaderId, String originalFileName,
+                                   String fileExtension, String description, Boolean isPublic, Long folderId) {
+        CloudFile cloudFile = new CloudFile();
+        cloudFile.setClassId(classId);
+        cloudFile.setFileName(fileExtension.isEmpty() ? staged.contentHash() : staged.contentHash() + "." + fileExtension);
+        cloudFile.setOriginalFileName(originalFileName);
+        cloudFile.setFilePath(filePath);
+        cloudFile.setFileSize(staged.size());
+        cloudFile.setFileType(fileExtension);
+        cloudFile.setDescription(description);
+        cloudFile.setUploaderId(uploaderId);
+        cloudFile.setDownloadCount(0);
+        cloudFile.setIsPublic(isPublic != null ? isPublic : true);
+        cloudFile.setFolderId(folderId);
+        cloudFile.setContentHash(staged.contentHash());
+        return cloudFile;
+    }
 
-        } catch (IOException e) {
-            log.error("文件上传失败", e);
-            throw BusinessException.of(500, "文件上传失败：" + e.getMessage());
+    /**
+     * 文件记录插入后同步统计、搜索索引和文件夹缓存
+     */
+    private void fileSaved(CloudFile cloudFile) {
+        cloudStatsTracker.fileAdded(cloudFile);
+        cloudSearchService.fileSaved(cloudFile);
+        // 事务提交后在后台生成缩略图，不占用上传请求的时间
+        thumbnailGenerator.scheduleAfterCommit(cloudFile.getFilePath(), cloudFile.getFileType(), cloudFile.getFileSize());
+        if (cloudFile.getFolderId() != null) {
+            folderTreeCache.invalidate(cloudFile.getClassId());
         }
     }
 
     @Override
     public List<CloudFile> listFilesByClass(Long classId) {
         log.debug("查询班级云盘文件 classId={}", classId);
-        return cloudFileMapper.findByClassId(classId);
+        return downloadCountBuffer.merge(cloudFileMapper.findByClassId(classId));
     }
 
     @Override
     public List<CloudFile> listFilesByClassAndType(Long classId, String fileType) {
         log.debug("按文件类型查询班级云盘文件 classId={} fileType={}", classId, fileType);
-        return cloudFileMapper.findByClassIdAndFileType(classId, fileType);
+        return downloadCountBuffer.merge(cloudFileMapper.findByClassIdAndFileType(classId, fileType));
     }
 
     @Override
     public List<CloudFile> listFilesByClassAndUploader(Long classId, Long uploaderId) {
         log.debug("查询用户上传的班级云盘文件 classId={} uploaderId={}", classId, uploaderId);
-        return cloudFileMapper.findByClassIdAndUploader(classId, uploaderId);
+        return downloadCountBuffer.merge(cloudFileMapper.findByClassIdAndUploader(classId, uploaderId));
     }
 
     @Override
     public List<CloudFile> listFilesByFolder(Long folderId) {
-        return cloudFileMapper.findByFolderId(folderId);
+        return downloadCountBuffer.merge(cloudFileMapper.findByFolderId(folderId));
+    }
+
+    @Override
+    public CursorPage<CloudFile> listFilesPage(Long classId, Long folderId, Long uploaderId, String fileType,
+                                               String cursor, Integer pageSize) {
+        PageCursor after = PageCursor.decode(cursor);
+        int size = PageCursor.pageSize(pageSize);
+        log.debug("游标分页查询云盘文件 classId={} folderId={} uploaderId={} fileType={} cursor={} pageSize={}",
+                classId, folderId, uploaderId, fileType, after, size);
+
+        List<CloudFile> rows = cloudFileMapper.findPage(classId, folderId, uploaderId,
+                StringUtils.hasText(fileType) ? fileType : null,
+                after != null ? after.time() : null, after != null ? after.id() : null, size + 1);
+        return CursorPage.of(downloadCountBuffer.merge(rows), size,
+                last -> new PageCursor(last.getCreatedAt(), last.getId()).encode());
     }
 
     @Override
@@ -141,7 +476,10 @@ public class CloudStorageServiceImpl implements CloudStorageService {
 
         CloudFile cloudFile = getFile(fileId);
         cloudFileMapper.moveFile(fileId, folderId);
+        cloudStatsTracker.fileMoved(cloudFile, cloudFile.getFolderId(), folderId);
+        folderTreeCache.invalidate(cloudFile.getClassId());
         cloudFile.setFolderId(folderId);
+        cloudSearchService.fileSaved(cloudFile);
 
         return cloudFile;
     }
@@ -153,7 +491,7 @@ public class CloudStorageServiceImpl implements CloudStorageService {
             log.warn("云盘文件不存在 id={}", id);
             throw BusinessException.of(404, "文件不存在");
         }
-        return cloudFile;
+        return downloadCountBuffer.merge(cloudFile);
     }
 
     @Override
@@ -172,8 +510,13 @@ public class CloudStorageServiceImpl implements CloudStorageService {
         }
 
         cloudFileMapper.update(cloudFile);
+        hotFileCache.invalidate(cloudFile.getId());
+        // 权限可能变化（如改为私有），已签发的下载链接失效
+        downloadUrlSigner.revoke(cloudFile.getId());
+        CloudFile updated = cloudFileMapper.findById(cloudFile.getId());
+        cloudSearchService.fileSaved(updated);
         log.info("更新云盘文件成功 id={} userId={}", cloudFile.getId(), userId);
-        return cloudFileMapper.findById(cloudFile.getId());
+        return downloadCountBuffer.merge(updated);
     }
 
     @Override
@@ -191,62 +534,111 @@ public class CloudStorageServiceImpl implements CloudStorageService {
             throw BusinessException.of(403, "无权限删除此文件");
         }
 
-        // 删除物理文件
-        try {
-            Path filePath = Paths.get(uploadDir + cloudFile.getFilePath());
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-            }
-        } catch (IOException e) {
-            log.warn("删除物理文件失败，但数据库记录已删除 filePath={}", cloudFile.getFilePath(), e);
-        }
-
         cloudFileMapper.delete(id);
+        hotFileCache.invalidate(id);
+        downloadUrlSigner.revoke(id);
+        cloudStatsTracker.fileRemoved(cloudFile);
+        storageQuotaManager.fileRemoved(cloudFile);
+        cloudSearchService.fileDeleted(cloudFile);
+        if (cloudFile.getFolderId() != null) {
+            folderTreeCache.invalidate(cloudFile.getClassId());
+        }
+        // 释放物理文件引用，最后一个引用释放后由后台任务删除磁盘文件
+        contentStore.release(cloudFile.getContentHash(), cloudFile.getFilePath());
         log.info("删除云盘文件成功 id={} userId={}", id, userId);
     }
 
     @Override
-    public byte[] downloadFile(Long id, Long userId) {
+    public CloudFileDownload downloadFile(Long id, Long userId) {
+        long stamp = hotFileCache.stamp();
         CloudFile cloudFile = getFile(id);
+        checkDownloadPermission(cloudFile, userId);
 
-        // 检查下载权限（这里可以根据实际需求扩展）
-        if (!cloudFile.getIsPublic()) {
-            // 私有文件可能需要特殊权限检查
-            if (!cloudFile.getUploaderId().equals(userId)) {
-                // 这里可以添加检查用户是否为该班级学生的逻辑
-                throw BusinessException.of(403, "无权限下载此文件");
-            }
+        // 热门小文件按当前记录的内容哈希校验版本后直接从内存输出，不读磁盘
+        ContentSource cached = hotFileCache.get(id, cloudFile.getContentHash());
+        if (cached != null) {
+            downloadCountBuffer.increment(id);
+            return new CloudFileDownload(cloudFile, cached);
         }
 
         try {
-            // 尝试更新下载次数，如果失败则继续下载文件
-            try {
-                incrementDownloadCountInNewTransaction(id);
-            } catch (Exception e) {
-                log.warn("更新下载次数失败，但继续下载文件: {}", e.getMessage());
-            }
+            // 已转入冷存储的文件在输出时边读边解压
+            ContentSource content = contentStore.open(cloudFile.getFilePath(), cloudFile.getContentHash(), cloudFile.getFileSize());
+            content = hotFileCache.put(cloudFile, content, stamp);
 
-            Path filePath = Paths.get(uploadDir + cloudFile.getFilePath());
-            if (!Files.exists(filePath)) {
-                throw BusinessException.of(404, "文件不存在");
-            }
-            return Files.readAllBytes(filePath);
+            // 下载次数先在内存中累加，由 DownloadCountBuffer 定期批量写回
+            downloadCountBuffer.increment(id);
+
+            return new CloudFileDownload(cloudFile, content);
+        } catch (NoSuchFileException e) {
+            throw BusinessException.of(404, "文件不存在");
         } catch (IOException e) {
             log.error("文件下载失败", e);
             throw BusinessException.of(500, "文件下载失败");
         }
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void incrementDownloadCountInNewTransaction(Long id) {
-        cloudFileMapper.incrementDownloadCount(id);
+    @Override
+    public DownloadUrl createDownloadUrl(Long id, Long userId, boolean priority) {
+        CloudFile cloudFile = getFile(id);
+        checkDownloadPermission(cloudFile, userId);
+
+        long expiresAt = downloadUrlSigner.nextExpiry();
+        String token = downloadUrlSigner.sign(new SignedDownload(cloudFile.getId(), cloudFile.getClassId(), cloudFile.getFilePath(),
+                cloudFile.getContentHash(), cloudFile.getFileSize(), expiresAt, userId, priority,
+                cloudFile.getOriginalFileName()));
+        return new DownloadUrl("/dl/" + token,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneId.systemDefault()));
+    }
+
+    private void checkDownloadPermission(CloudFile cloudFile, Long userId) {
+        if (!canDownload(cloudFile, userId)) {
+            throw BusinessException.of(403, "无权限下载此文件");
+        }
+    }
+
+    private boolean canDownload(CloudFile cloudFile, Long userId) {
+        // 检查下载权限（这里可以根据实际需求扩展）
+        // 私有文件可能需要特殊权限检查，这里可以添加检查用户是否为该班级学生的逻辑
+        return Boolean.TRUE.equals(cloudFile.getIsPublic()) || Objects.equals(cloudFile.getUploaderId(), userId);
     }
 
     @Override
+    public CloudFileDownload getThumbnail(Long id, Long userId) {
+        CloudFile cloudFile = getFile(id);
+        if (!cloudFile.getIsPublic() && !cloudFile.getUploaderId().equals(userId)) {
+            throw BusinessException.of(403, "无权限查看此文件");
+        }
+        if (!ThumbnailGenerator.isSupported(cloudFile.getFileType())) {
+            throw BusinessException.of(404, "该文件类型不支持预览");
+        }
+
+        try {
+            String eTag = cloudFile.getContentHash() != null ? cloudFile.getContentHash() + "-thumb" : null;
+            return new CloudFileDownload(cloudFile, thumbnailGenerator.read(cloudFile.getFilePath(), eTag));
+        } catch (NoSuchFileException e) {
+            log.debug("缩略图尚未生成 id={}", id);
+        } catch (IOException e) {
+            log.warn("读取缩略图失败 id={}: {}", id, e.getMessage());
+        }
+        try {
+            if (thumbnailGenerator.hasFailed(cloudFile.getFilePath())) {
+                throw BusinessException.of(404, "该文件无法生成缩略图");
+            }
+        } catch (IOException e) {
+            log.warn("读取缩略图失败标记失败 id={}: {}", id, e.getMessage());
+        }
+        // 历史文件或生成任务被丢弃时重新排队
+        thumbnailGenerator.schedule(cloudFile.getFilePath(), cloudFile.getFileType(), cloudFile.getFileSize());
+        throw BusinessException.of(404, "缩略图正在生成，请稍后重试");
+    }
+
+    @Override
+    @Transactional
     public CloudFileStatistics getFileStatistics(Long classId) {
-        Long totalSize = cloudFileMapper.getTotalSizeByClassId(classId);
-        Integer fileCount = cloudFileMapper.getFileCountByClassId(classId);
-        return new CloudFileStatistics(totalSize != null ? totalSize : 0L, fileCount != null ? fileCount : 0);
+        // 统计行增量维护，按主键读取；首次读取时初始化，因此需要可写事务
+        CloudClassStats stats = cloudStatsTracker.getClassStats(classId);
+        return new CloudFileStatistics(stats.getTotalSize(), stats.getFileCount());
     }
 
     private String getFileExtension(String fileName) {
@@ -277,6 +669,7 @@ public class CloudStorageServiceImpl implements CloudStorageService {
     @Transactional
     public CloudFolder createFolder(Long classId, String name, Long parentFolderId, Long creatorId) {
         log.info("创建文件夹 classId={} name={} parentFolderId={} creatorId={}", classId, name, parentFolderId, creatorId);
+        checkFolderName(name);
 
         // 检查文件夹名称是否已存在
         if (isFolderNameExists(classId, name, parentFolderId)) {
@@ -297,6 +690,9 @@ public class CloudStorageServiceImpl implements CloudStorageService {
 
         CloudFolder folder = new CloudFolder(classId, name, parentFolderId, folderPath, creatorId);
         cloudFolderMapper.insert(folder);
+        cloudStatsTracker.folderCreated(folder);
+        folderTreeCache.invalidate(classId);
+        cloudSearchService.folderSaved(folder);
 
         return folder;
     }
@@ -310,19 +706,27 @@ public class CloudStorageServiceImpl implements CloudStorageService {
         return folder;
     }
 
+    // 文件夹列表与树形结构均从 FolderTreeCache 读取，命中缓存时不访问数据库，因此不开启事务
+
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<CloudFolder> getRootFolders(Long classId) {
-        return cloudFolderMapper.findRootFolders(classId);
+        cloudStatsTracker.ensureSeeded(classId);
+        return folderTreeCache.getRootFolders(classId);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<CloudFolder> getSubFolders(Long classId, Long parentFolderId) {
-        return cloudFolderMapper.findByParentId(classId, parentFolderId);
+        cloudStatsTracker.ensureSeeded(classId);
+        return folderTreeCache.getChildren(classId, parentFolderId);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<CloudFolder> getFoldersWithStats(Long classId, Long parentFolderId) {
-        return cloudFolderMapper.findWithStats(classId, parentFolderId);
+        cloudStatsTracker.ensureSeeded(classId);
+        return folderTreeCache.getChildren(classId, parentFolderId);
     }
 
     @Override
@@ -330,6 +734,7 @@ public class CloudStorageServiceImpl implements CloudStorageService {
     public CloudFolder renameFolder(Long id, String newName, Long userId) {
         log.info("重命名文件夹 id={} newName={} userId={}", id, newName, userId);
 
+        checkFolderName(newName);
         CloudFolder folder = getFolder(id);
 
         // 检查新名称是否已存在
@@ -337,8 +742,15 @@ public class CloudStorageServiceImpl implements CloudStorageService {
             throw new BusinessException(400, "文件夹名称已存在");
         }
 
-        cloudFolderMapper.updateName(id, newName);
+        String oldPath = folder.getPath();
+        String newPath = buildFolderPath(folder.getParentFolderId()) + "/" + newName;
+        cloudFolderMapper.updateName(id, newName, newPath);
+        int descendants = rewriteDescendantPaths(id, cloudFolderMapper.findAllSubFolderIds(id), oldPath, newPath);
         folder.setName(newName);
+        folder.setPath(newPath);
+        folderTreeCache.invalidate(folder.getClassId());
+        cloudSearchService.invalidate(folder.getClassId());
+        log.debug("文件夹路径已更新 id={} path={} descendants={}", id, newPath, descendants);
 
         return folder;
     }
@@ -349,19 +761,20 @@ public class CloudStorageServiceImpl implements CloudStorageService {
         log.info("移动文件夹 id={} newParentId={} userId={}", id, newParentId, userId);
 
         CloudFolder folder = getFolder(id);
+        // 按 parent_folder_id 递归取出的子树（包含自己），循环检查和路径重写共用
+        List<Long> subtreeIds = cloudFolderMapper.findAllSubFolderIds(id);
 
         // 检查是否移动到自己的子文件夹
         if (newParentId != null) {
-            List<Long> subFolderIds = cloudFolderMapper.findAllSubFolderIds(id);
-            if (subFolderIds.contains(newParentId)) {
-                throw new BusinessException(400, "不能移动到自己的子文件夹");
-            }
-
             CloudFolder newParent = cloudFolderMapper.findById(newParentId);
             if (newParent == null || !newParent.getClassId().equals(folder.getClassId())) {
                 throw new BusinessException(404, "目标文件夹不存在");
             }
 
+            if (subtreeIds.contains(newParentId)) {
+                throw new BusinessException(400, "不能移动到自己的子文件夹");
+            }
+
             // 检查目标文件夹中是否已存在同名文件夹
             if (isFolderNameExists(folder.getClassId(), folder.getName(), newParentId)) {
                 throw new BusinessException(400, "目标文件夹中已存在同名文件夹");
@@ -372,9 +785,13 @@ public class CloudStorageServiceImpl implements CloudStorageService {
         String newParentPath = buildFolderPath(newParentId);
         String newPath = newParentPath + "/" + folder.getName();
 
+        String oldPath = folder.getPath();
         cloudFolderMapper.moveFolder(id, newParentId, newPath);
+        rewriteDescendantPaths(id, subtreeIds, oldPath, newPath);
         folder.setParentFolderId(newParentId);
         folder.setPath(newPath);
+        folderTreeCache.invalidate(folder.getClassId());
+        cloudSearchService.invalidate(folder.getClassId());
 
         return folder;
     }
@@ -386,24 +803,100 @@ public class CloudStorageServiceImpl implements CloudStorageService {
 
         CloudFolder folder = getFolder(id);
 
-        // 递归删除所有子文件夹
-        List<Long> subFolderIds = cloudFolderMapper.findAllSubFolderIds(id);
-        subFolderIds.add(id); // 包含自己
+        // 包含自己；按 parent_folder_id 递归并按层级返回，倒序后先删除最深层的文件夹。
+        // path 不保证唯一且可能过期，不能用于确定子树
+        List<Long> subFolderIds = new ArrayList<>(cloudFolderMapper.findAllSubFolderIds(id));
+        if (!subFolderIds.contains(id)) {
+            subFolderIds.add(0, id);
+        }
+        Collections.reverse(subFolderIds);
+
+        // 按批次汇总将被删除的文件引用，再按批次删除文件记录
+        List<CloudBlob> refs = new ArrayList<>();
+        List<CloudFile> uploaderSizes = new ArrayList<>();
+        for (List<Long> batch : partition(subFolderIds)) {
+            refs.addAll(cloudFileMapper.findContentRefsByFolderIds(batch));
+            uploaderSizes.addAll(cloudFileMapper.findUploaderSizesByFolderIds(batch));
+            cloudFileMapper.deleteByFolderIds(batch);
+        }
+        for (List<Long> batch : partition(subFolderIds)) {
+            cloudFolderMapper.deleteByIds(batch);
+        }
+
+        // 物理文件引用归零的登记待清理，由后台任务删除
+        contentStore.releaseAll(refs);
 
-        // 删除所有子文件夹中的文件
-        for (Long folderId : subFolderIds) {
-            cloudFileMapper.deleteByFolderId(folderId);
+        long removedSize = 0;
+        int removedFiles = 0;
+        for (CloudBlob ref : refs) {
+            removedSize += ref.getFileSize();
+            removedFiles += ref.getRefCount();
         }
+        cloudStatsTracker.folderContentsRemoved(folder.getClassId(), removedSize, removedFiles, subFolderIds.size());
+        storageQuotaManager.folderContentsRemoved(folder.getClassId(), removedSize, uploaderSizes);
+        folderTreeCache.invalidate(folder.getClassId());
+        cloudSearchService.invalidate(folder.getClassId());
+        hotFileCache.invalidateClass(folder.getClassId());
+        downloadUrlSigner.revokeClass(folder.getClassId());
+        log.info("删除文件夹完成 id={} folders={} files={}", id, subFolderIds.size(), removedFiles);
+    }
 
-        // 删除所有子文件夹
-        for (Long folderId : subFolderIds) {
-            cloudFolderMapper.delete(folderId);
+    private static <T> List<List<T>> partition(List<T> items) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += DELETE_BATCH_SIZE) {
+            batches.add(items.subList(from, Math.min(from + DELETE_BATCH_SIZE, items.size())));
         }
+        return batches;
+    }
+
+    /**
+     * 将文件夹所有子孙的路径前缀由 oldPath 替换为 newPath
+     *
+     * @param subtreeIds {@link CloudFolderMapper#findAllSubFolderIds} 的结果
+     */
+    private int rewriteDescendantPaths(Long folderId, List<Long> subtreeIds, String oldPath, String newPath) {
+        if (oldPath == null || oldPath.equals(newPath)) {
+            return 0;
+        }
+        List<Long> descendantIds = new ArrayList<>(subtreeIds);
+        descendantIds.remove(folderId);
+        String oldPrefix = oldPath + "/";
+        int rewritten = 0;
+        for (List<Long> batch : partition(descendantIds)) {
+            rewritten += cloudFolderMapper.rewritePathPrefix(batch, descendantPattern(oldPath), newPath + "/",
+                    oldPrefix.codePointCount(0, oldPrefix.length()));
+        }
+        return rewritten;
+    }
+
+    private static void checkFolderName(String name) {
+        if (name == null || name.isBlank()) {
+            throw new BusinessException(400, "文件夹名称不能为空");
+        }
+        if (name.indexOf('/') >= 0) {
+            throw new BusinessException(400, "文件夹名称不能包含 /");
+        }
+    }
+
+    /**
+     * 匹配某路径下所有子孙文件夹的 LIKE 模式，转义文件夹名中的通配符
+     */
+    private static String descendantPattern(String path) {
+        String escaped = path.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return escaped + "/%";
     }
 
     @Override
     public List<CloudFolder> searchFolders(Long classId, String keyword) {
-        return cloudFolderMapper.searchByName(classId, keyword);
+        // 使用搜索索引代替 LIKE 全表扫描，按相关度排序
+        List<CloudFolder> folders = new ArrayList<>();
+        for (CloudSearchHit hit : cloudSearchService.search(classId, keyword, ClassSearchIndex.TYPE_FOLDER, null, MAX_FOLDER_SEARCH_RESULTS)) {
+            CloudFolder folder = new CloudFolder(classId, hit.getName(), hit.getFolderId(), hit.getPath(), null);
+            folder.setId(hit.getId());
+            folder.setCreatedAt(hit.getCreatedAt());
+            folders.add(folder);
+        }
+        return folders;
     }
 
     @Override
@@ -427,41 +920,144 @@ public class CloudStorageServiceImpl implements CloudStorageService {
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<CloudFolder> getFolderTree(Long classId, Long rootFolderId) {
+        cloudStatsTracker.ensureSeeded(classId);
         List<CloudFolder> tree = new ArrayList<>();
 
         if (rootFolderId == null) {
             // 获取根文件夹
-            List<CloudFolder> rootFolders = getRootFolders(classId);
-            for (CloudFolder root : rootFolders) {
-                buildSubTree(root);
-                tree.add(root);
+            for (CloudFolder root : folderTreeCache.getRootFolders(classId)) {
+                tree.add(folderTreeCache.getSubtree(classId, root.getId()));
             }
         } else {
-            CloudFolder root = getFolder(rootFolderId);
-            buildSubTree(root);
+            CloudFolder root = folderTreeCache.getSubtree(classId, rootFolderId);
+            if (root == null) {
+                throw new BusinessException(404, "文件夹不存在");
+            }
             tree.add(root);
         }
 
         return tree;
     }
 
-    private void buildSubTree(CloudFolder parent) {
-        List<CloudFolder> children = getSubFolders(parent.getClassId(), parent.getId());
-        for (CloudFolder child : children) {
-            buildSubTree(child);
-        }
-        parent.setSubFolders(children);
+    @Override
+    @Transactional
+    public CloudFolderStatistics getFolderStatistics(Long classId) {
+        CloudClassStats stats = cloudStatsTracker.getClassStats(classId);
+        return new CloudFolderStatistics(stats.getTotalSize(), stats.getFileCount(), stats.getFolderCount());
     }
 
+    /**
+     * 将文件夹及其所有子文件夹打包为 ZIP 直接写出到输出流，不在内存或临时文件中缓存。
+     * 已压缩格式使用 STORED 模式，避免重复压缩的CPU开销。
+     * 打包过程可能持续较长时间，不占用数据库事务。
+     */
     @Override
-    public CloudFolderStatistics getFolderStatistics(Long classId) {
-        // 获取所有文件夹
-        List<CloudFolder> allFolders = cloudFolderMapper.findAllByClassId(classId);
-        Integer folderCount = allFolders.size();
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void writeFolderZip(CloudFolder folder, Long userId, OutputStream out) throws IOException {
+        // 按层级排序，父文件夹的目录条目先于子文件夹写出
+        List<CloudFolder> ordered = new ArrayList<>(cloudFolderMapper.findSubtree(folder.getId()));
+        if (ordered.isEmpty()) {
+            ordered.add(folder);
+        }
+        Map<Long, CloudFolder> folders = new HashMap<>();
+        for (CloudFolder candidate : ordered) {
+            folders.put(candidate.getId(), candidate);
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Set<String> entryNames = new HashSet<>();
+        int fileCount = 0;
+        for (CloudFolder current : ordered) {
+            String dir = zipDirectory(folder, current, folders);
+            ZipEntry dirEntry = new ZipEntry(dir);
+            if (entryNames.add(dir)) {
+                zip.putNextEntry(dirEntry);
+                zip.closeEntry();
+            }
+
+            for (CloudFile cloudFile : cloudFileMapper.findByFolderId(current.getId())) {
+                if (!cloudFile.getIsPublic() && !cloudFile.getUploaderId().equals(userId)) {
+                    continue;
+                }
+                if (!contentStore.exists(cloudFile.getFilePath())) {
+                    log.warn("打包时物理文件不存在，跳过 fileId={} filePath={}", cloudFile.getId(), cloudFile.getFilePath());
+                    continue;
+                }
+                writeZipEntry(zip, uniqueEntryName(entryNames, dir, cloudFile.getOriginalFileName()), cloudFile);
+                fileCount++;
+            }
+        }
+        zip.finish();
+        zip.flush();
+        log.info("文件夹打包下载完成 folderId={} userId={} folders={} files={}", folder.getId(), userId, ordered.size(), fileCount);
+    }
+
+    private void writeZipEntry(ZipOutputStream zip, String entryName, CloudFile cloudFile) throws IOException {
+        ZipEntry entry = new ZipEntry(entryName);
+        if (cloudFile.getCreatedAt() != null) {
+            entry.setTimeLocal(cloudFile.getCreatedAt());
+        }
+        if (isCompressedFileType(getFileExtension(cloudFile.getOriginalFileName()).toLowerCase())) {
+            // STORED 模式需要预先写入大小和CRC，先顺序读一遍计算CRC
+            long size = cloudFile.getFileSize();
+            CRC32 crc = new CRC32();
+            try (CheckedInputStream in = new CheckedInputStream(contentStore.openStream(cloudFile.getFilePath()), crc)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        try (InputStream in = contentStore.openStream(cloudFile.getFilePath())) {
+            in.transferTo(zip);
+        }
+        zip.closeEntry();
+    }
+
+    /**
+     * 按父文件夹链计算文件夹在压缩包内的目录，以导出的文件夹名作为根目录
+     */
+    private String zipDirectory(CloudFolder root, CloudFolder folder, Map<Long, CloudFolder> folders) {
+        StringBuilder relative = new StringBuilder();
+        CloudFolder current = folder;
+        while (current != null && !current.getId().equals(root.getId())) {
+            relative.insert(0, "/" + current.getName());
+            current = folders.get(current.getParentFolderId());
+        }
+        return sanitizeEntryName(root.getName() + relative) + "/";
+    }
+
+    private String uniqueEntryName(Set<String> entryNames, String dir, String fileName) {
+        String name = sanitizeEntryName(fileName);
+        String candidate = dir + name;
+        int dotIndex = name.lastIndexOf('.');
+        String base = dotIndex > 0 ? name.substring(0, dotIndex) : name;
+        String extension = dotIndex > 0 ? name.substring(dotIndex) : "";
+        for (int i = 1; !entryNames.add(candidate); i++) {
+            candidate = dir + base + " (" + i + ")" + extension;
+        }
+        return candidate;
+    }
+
+    private String sanitizeEntryName(String name) {
+        StringBuilder builder = new StringBuilder();
+        for (String segment : name.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append('/');
+            }
+            builder.append(segment);
+        }
+        return builder.length() > 0 ? builder.toString() : "_";
+    }
 
-        // 计算文件总大小和数量（这里需要扩展CloudFileMapper来支持按班级统计）
-        // 暂时返回基础统计，后续可以优化
-        return new CloudFolderStatistics(0L, 0, folderCount);
+    private boolean isCompressedFileType(String extension) {
+        return COMPRESSED_FILE_TYPES.contains(extension);
     }
 }
@@ -6,23 +6,39 @@
 package com.tiqs.service.impl;
 
 import com.tiqs.common.BusinessException;
+import com.tiqs.common.CursorPage;
+import com.tiqs.common.PageCursor;
+import com.tiqs.dto.CommentNode;
 import com.tiqs.entity.Comment;
 import com.tiqs.mapper.CommentMapper;
+import com.tiqs.mapper.DiscussionMapper;
 import com.tiqs.service.CommentService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
 @Transactional(readOnly = true)
 public class CommentServiceImpl implements CommentService {
+    private static final int DEFAULT_TREE_DEPTH = 3;
+    private static final int MAX_TREE_DEPTH = 10;
+    /**
+     * 评论树中每个节点最多返回的直接回复数，其余通过 listReplies 分页加载
+     */
+    private static final int MAX_REPLIES_PER_NODE = 10;
+
     private final CommentMapper commentMapper;
+    private final DiscussionMapper discussionMapper;
 
-    public CommentServiceImpl(CommentMapper commentMapper) {
+    public CommentServiceImpl(CommentMapper commentMapper, DiscussionMapper discussionMapper) {
         this.commentMapper = commentMapper;
+        this.discussionMapper = discussionMapper;
     }
 
     @Transactional
@@ -30,6 +46,7 @@ public class CommentServiceImpl implements CommentService {
     public Comment create(Comment comment) {
         comment.setIsEdited(false);
         commentMapper.insert(comment);
+        discussionMapper.addCommentCount(comment.getDiscussionId(), 1);
         log.info("创建评论成功 id={} discussionId={} authorId={}", comment.getId(), comment.getDiscussionId(), comment.getAuthorId());
         return comment;
     }
@@ -39,6 +56,73 @@ public class CommentServiceImpl implements CommentService {
         return commentMapper.findByDiscussionId(discussionId);
     }
 
+    @Override
+    public CursorPage<CommentNode> listTree(Long discussionId, String cursor, Integer pageSize, Integer maxDepth) {
+        PageCursor after = PageCursor.decode(cursor);
+        int size = PageCursor.pageSize(pageSize);
+        int depth = treeDepth(maxDepth);
+        log.debug("分页查询评论树 discussionId={} cursor={} pageSize={} maxDepth={}", discussionId, after, size, depth);
+
+        List<CommentNode> rows = commentMapper.findTree(discussionId, null,
+                after != null ? after.time() : null, after != null ? after.id() : null, size + 1, depth,
+                MAX_REPLIES_PER_NODE);
+        return CursorPage.of(assemble(rows), size, CommentServiceImpl::cursorOf);
+    }
+
+    @Override
+    public CursorPage<CommentNode> listReplies(Long commentId, String cursor, Integer pageSize, Integer maxDepth) {
+        PageCursor after = PageCursor.decode(cursor);
+        int size = PageCursor.pageSize(pageSize);
+        int depth = treeDepth(maxDepth);
+        log.debug("分页加载评论回复 commentId={} cursor={} pageSize={} maxDepth={}", commentId, after, size, depth);
+
+        List<CommentNode> rows = commentMapper.findTree(null, commentId,
+                after != null ? after.time() : null, after != null ? after.id() : null, size + 1, depth,
+                MAX_REPLIES_PER_NODE);
+        return CursorPage.of(assemble(rows), size, CommentServiceImpl::cursorOf);
+    }
+
+    private static String cursorOf(CommentNode node) {
+        return new PageCursor(node.getCreatedAt(), node.getId()).encode();
+    }
+
+    private static int treeDepth(Integer maxDepth) {
+        if (maxDepth == null || maxDepth <= 0) {
+            return DEFAULT_TREE_DEPTH;
+        }
+        return Math.min(maxDepth, MAX_TREE_DEPTH);
+    }
+
+    /**
+     * 结果按层级排序，父节点先于子节点出现，一次遍历即可挂到父节点下；
+     * 再按直接回复总数与已返回的回复数标记需要继续加载的节点
+     *
+     * @return 最上层节点，保持查询顺序
+     */
+    private static List<CommentNode> assemble(List<CommentNode> rows) {
+        Map<Long, CommentNode> nodes = new HashMap<>(rows.size() * 2);
+        List<CommentNode> roots = new ArrayList<>();
+        for (CommentNode node : rows) {
+            nodes.put(node.getId(), node);
+            if (node.getDepth() == 1) {
+                roots.add(node);
+            } else {
+                CommentNode parent = nodes.get(node.getParentId());
+                if (parent != null) {
+                    parent.getReplies().add(node);
+                }
+            }
+        }
+        for (CommentNode node : rows) {
+            List<CommentNode> replies = node.getReplies();
+            if (node.getReplyCount() > replies.size()) {
+                node.setHasMoreReplies(true);
+                node.setRepliesCursor(replies.isEmpty() ? null : cursorOf(replies.get(replies.size() - 1)));
+            }
+        }
+        return roots;
+    }
+
     @Transactional
     @Override
     public Comment update(Comment comment) {
@@ -68,14 +152,17 @@ public class CommentServiceImpl implements CommentService {
             log.warn("删除失败，无权限 userId={} commentId={} authorId={}", userId, id, comment.getAuthorId());
             throw BusinessException.of(403, "无权限删除此评论");
         }
+        int removed = commentMapper.countSubtree(id);
         commentMapper.delete(id);
-        log.info("删除评论成功 id={}", id);
+        discussionMapper.addCommentCount(comment.getDiscussionId(), -removed);
+        log.info("删除评论成功 id={} removed={}", id, removed);
     }
 
     @Transactional
     @Override
     public void deleteByDiscussion(Long discussionId) {
         commentMapper.deleteByDiscussionId(discussionId);
+        discussionMapper.recountComments(discussionId);
         log.info("删除讨论下的所有评论 discussionId={}", discussionId);
     }
 }
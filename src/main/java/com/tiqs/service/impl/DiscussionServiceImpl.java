@@ -6,6 +6,9 @@
 package com.tiqs.service.impl;
 
 import com.tiqs.common.BusinessException;
+import com.tiqs.common.CursorPage;
+import com.tiqs.common.DiscussionCursor;
+import com.tiqs.common.PageCursor;
 import com.tiqs.entity.Discussion;
 import com.tiqs.mapper.ClassMapper;
 import com.tiqs.mapper.DiscussionMapper;
@@ -22,10 +25,13 @@ import java.util.List;
 public class DiscussionServiceImpl implements DiscussionService {
     private final DiscussionMapper discussionMapper;
     private final ClassMapper classMapper;
+    private final DiscussionViewCountBuffer viewCountBuffer;
 
-    public DiscussionServiceImpl(DiscussionMapper discussionMapper, ClassMapper classMapper) {
+    public DiscussionServiceImpl(DiscussionMapper discussionMapper, ClassMapper classMapper,
+                                 DiscussionViewCountBuffer viewCountBuffer) {
         this.discussionMapper = discussionMapper;
         this.classMapper = classMapper;
+        this.viewCountBuffer = viewCountBuffer;
     }
 
     @Transactional
@@ -33,6 +39,7 @@ public class DiscussionServiceImpl implements DiscussionService {
     public Discussion create(Discussion discussion) {
         discussion.setViewCount(0);
         discussion.setIsPinned(false);
+        discussion.setCommentCount(0);
         discussionMapper.insert(discussion);
         log.info("创建讨论成功 id={} classId={} title={}", discussion.getId(), discussion.getClassId(), discussion.getTitle());
         return discussion;
@@ -40,7 +47,20 @@ public class DiscussionServiceImpl implements DiscussionService {
     @Override
     public List<Discussion> listByClass(Long classId) {
         log.debug("查询班级讨论列表 classId={}", classId);
-        return discussionMapper.findByClassId(classId);
+        return viewCountBuffer.merge(discussionMapper.findByClassId(classId));
+    }
+
+    @Override
+    public CursorPage<Discussion> listByClassPage(Long classId, String cursor, Integer pageSize) {
+        DiscussionCursor after = DiscussionCursor.decode(cursor);
+        int size = PageCursor.pageSize(pageSize);
+        log.debug("游标分页查询班级讨论 classId={} cursor={} pageSize={}", classId, after, size);
+
+        List<Discussion> rows = discussionMapper.findPage(classId,
+                after != null ? after.pinned() : null, after != null ? after.time() : null,
+                after != null ? after.id() : null, size + 1);
+        return CursorPage.of(viewCountBuffer.merge(rows), size,
+                last -> new DiscussionCursor(Boolean.TRUE.equals(last.getIsPinned()), last.getUpdatedAt(), last.getId()).encode());
     }
     @Override
     public Discussion get(Long id) {
@@ -49,7 +69,7 @@ public class DiscussionServiceImpl implements DiscussionService {
             log.warn("讨论不存在 id={}", id);
             throw BusinessException.of(404, "讨论不存在");
         }
-        return discussion;
+        return viewCountBuffer.merge(discussion);
     }
 
     @Transactional
@@ -62,7 +82,7 @@ public class DiscussionServiceImpl implements DiscussionService {
         }
         discussionMapper.update(discussion);
         log.info("更新讨论成功 id={} title={}", discussion.getId(), discussion.getTitle());
-        return discussionMapper.findById(discussion.getId());
+        return viewCountBuffer.merge(discussionMapper.findById(discussion.getId()));
     }
 
     @Transactional
@@ -81,10 +101,9 @@ public class DiscussionServiceImpl implements DiscussionService {
         log.info("删除讨论成功 id={}", id);
     }
 
-    @Transactional
     @Override
     public void incrementViewCount(Long id) {
-        discussionMapper.incrementViewCount(id);
+        viewCountBuffer.increment(id);
     }
 
     @Transactional
@@ -97,6 +116,6 @@ public class DiscussionServiceImpl implements DiscussionService {
         }
         discussionMapper.updatePinnedStatus(id, isPinned);
         log.info("更新讨论置顶状态成功 id={} isPinned={} userId={}", id, isPinned, userId);
-        return discussionMapper.findById(id);
+        return viewCountBuffer.merge(discussionMapper.findById(id));
     }
 }
@@ -0,0 +1,31 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-19 00:18:42
+ * @description DiscussionViewCountBuffer - 讨论浏览次数的写后缓冲
+ */
+package com.tiqs.service.impl;
+
+import com.tiqs.common.CountBuffer;
+import com.tiqs.entity.Discussion;
+import com.tiqs.mapper.DiscussionMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 浏览时只在内存中累加，定期批量写回，全校同时打开置顶公告时不再争用同一行的行锁。
+ * 写回不修改 updated_at，浏览不会改变讨论列表的排序。
+ */
+@Component
+public class DiscussionViewCountBuffer extends CountBuffer<Discussion> {
+
+    public DiscussionViewCountBuffer(DiscussionMapper discussionMapper) {
+        super("讨论浏览次数", discussionMapper::addViewCounts,
+                Discussion::getId, Discussion::getViewCount, Discussion::setViewCount);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${discussion.view-count.flush-interval-ms:5000}")
+    public void flush() {
+        super.flush();
+    }
+}
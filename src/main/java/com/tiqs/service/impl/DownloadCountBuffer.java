@@ -0,0 +1,30 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 13:20:08
+ * @description DownloadCountBuffer - 云盘文件下载次数的写后缓冲
+ */
+package com.tiqs.service.impl;
+
+import com.tiqs.common.CountBuffer;
+import com.tiqs.entity.CloudFile;
+import com.tiqs.mapper.CloudFileMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 下载时只在内存中累加，定期批量写回 cloud_files.download_count。
+ */
+@Component
+public class DownloadCountBuffer extends CountBuffer<CloudFile> {
+
+    public DownloadCountBuffer(CloudFileMapper cloudFileMapper) {
+        super("下载次数", cloudFileMapper::addDownloadCounts,
+                CloudFile::getId, CloudFile::getDownloadCount, CloudFile::setDownloadCount);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${cloud.download-count.flush-interval-ms:5000}")
+    public void flush() {
+        super.flush();
+    }
+}
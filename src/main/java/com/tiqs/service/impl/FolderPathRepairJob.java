@@ -0,0 +1,109 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:14:36
+ * @description FolderPathRepairJob - 按父子关系校正文件夹的物化路径
+ */
+package com.tiqs.service.impl;
+
+import com.tiqs.entity.CloudFolder;
+import com.tiqs.mapper.CloudFolderMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * cloud_folders.path 用于展示和搜索结果。早期版本移动、重命名文件夹时不更新子孙路径，
+ * 该任务按 parent_folder_id 重新计算每个文件夹的路径并修正不一致的行。
+ */
+@Slf4j
+@Component
+public class FolderPathRepairJob {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final CloudFolderMapper cloudFolderMapper;
+    private final FolderTreeCache folderTreeCache;
+
+    public FolderPathRepairJob(CloudFolderMapper cloudFolderMapper, FolderTreeCache folderTreeCache) {
+        this.cloudFolderMapper = cloudFolderMapper;
+        this.folderTreeCache = folderTreeCache;
+    }
+
+    @Scheduled(fixedDelayString = "${cloud.folder-path.repair-interval-ms:86400000}",
+            initialDelayString = "${cloud.folder-path.repair-initial-delay-ms:300000}")
+    public void repair() {
+        int classes = 0;
+        int repaired = 0;
+        try {
+            Long after = 0L;
+            List<Long> classIds;
+            do {
+                classIds = cloudFolderMapper.findClassIds(after, BATCH_SIZE);
+                for (Long classId : classIds) {
+                    repaired += repairClass(classId);
+                    classes++;
+                    after = classId;
+                }
+            } while (classIds.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("文件夹路径校正失败 classes={} repaired={}", classes, repaired, e);
+            return;
+        }
+        log.info("文件夹路径校正完成 classes={} repaired={}", classes, repaired);
+    }
+
+    private int repairClass(Long classId) {
+        List<CloudFolder> folders = cloudFolderMapper.findAllByClassId(classId);
+        Map<Long, CloudFolder> byId = new HashMap<>();
+        for (CloudFolder folder : folders) {
+            byId.put(folder.getId(), folder);
+        }
+
+        Map<Long, String> expected = new HashMap<>();
+        int repaired = 0;
+        for (CloudFolder folder : folders) {
+            String path = expectedPath(folder, byId, expected, new HashSet<>());
+            if (path != null && !Objects.equals(path, folder.getPath())) {
+                cloudFolderMapper.updatePath(folder.getId(), path);
+                log.warn("校正文件夹路径 id={} {} -> {}", folder.getId(), folder.getPath(), path);
+                repaired++;
+            }
+        }
+        if (repaired > 0) {
+            folderTreeCache.invalidate(classId);
+        }
+        return repaired;
+    }
+
+    /**
+     * 沿父文件夹链计算路径，出现环时返回 null 不做修改
+     */
+    private String expectedPath(CloudFolder folder, Map<Long, CloudFolder> byId, Map<Long, String> expected, Set<Long> visiting) {
+        String cached = expected.get(folder.getId());
+        if (cached != null) {
+            return cached;
+        }
+        if (!visiting.add(folder.getId())) {
+            log.error("文件夹父子关系存在环 id={}", folder.getId());
+            return null;
+        }
+        String parentPath = "";
+        CloudFolder parent = folder.getParentFolderId() != null ? byId.get(folder.getParentFolderId()) : null;
+        if (parent != null) {
+            parentPath = expectedPath(parent, byId, expected, visiting);
+            if (parentPath == null) {
+                return null;
+            }
+        }
+        String path = parentPath + "/" + folder.getName();
+        expected.put(folder.getId(), path);
+        return path;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 15:52:19
+ * @description FolderTreeCache - 按班级缓存的文件夹树，带版本号失效
+ */
+package com.tiqs.service.impl;
+
+import com.tiqs.entity.CloudFolder;
+import com.tiqs.mapper.CloudFolderMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一次查询加载班级的全部文件夹（含直属文件统计），按父子关系 O(n) 组装后缓存，
+ * 之后的树形导航不再访问数据库。
+ * <p>
+ * 每个班级维护一个版本号，文件夹或文件变更时递增并丢弃缓存；加载结果只有在加载期间版本号未变化时才写入缓存。
+ * 事务内的变更在提交后会再失效一次，避免提交前被并发读取的旧数据重新写入缓存。
+ * 返回给调用方的都是副本，缓存内的对象不会被修改。
+ */
+@Slf4j
+@Component
+public class FolderTreeCache {
+
+    private final CloudFolderMapper cloudFolderMapper;
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+    private final Map<Long, Snapshot> snapshots;
+
+    public FolderTreeCache(CloudFolderMapper cloudFolderMapper,
+                           @Value("${cloud.folder-tree-cache.max-classes:1000}") int maxClasses) {
+        this.cloudFolderMapper = cloudFolderMapper;
+        this.snapshots = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+                return size() > maxClasses;
+            }
+        });
+    }
+
+    /**
+     * 一个班级某一版本的文件夹树，key 为 null 的子列表是根文件夹
+     */
+    private record Snapshot(long version, Map<Long, CloudFolder> folders, Map<Long, List<CloudFolder>> children) {
+    }
+
+    /**
+     * 根文件夹列表（不含子树）
+     */
+    public List<CloudFolder> getRootFolders(Long classId) {
+        return getChildren(classId, null);
+    }
+
+    /**
+     * 直接子文件夹列表（不含子树）
+     */
+    public List<CloudFolder> getChildren(Long classId, Long parentFolderId) {
+        Snapshot snapshot = snapshot(classId);
+        List<CloudFolder> result = new ArrayList<>();
+        for (CloudFolder child : snapshot.children().getOrDefault(parentFolderId, List.of())) {
+            result.add(copy(snapshot, child, false));
+        }
+        return result;
+    }
+
+    /**
+     * 以指定文件夹为根的完整子树，文件夹不属于该班级时返回 null
+     */
+    public CloudFolder getSubtree(Long classId, Long folderId) {
+        Snapshot snapshot = snapshot(classId);
+        CloudFolder folder = snapshot.folders().get(folderId);
+        return folder != null ? copy(snapshot, folder, true) : null;
+    }
+
+    /**
+     * 班级文件夹或其中文件发生变化时调用
+     */
+    public void invalidate(Long classId) {
+        bump(classId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump(classId);
+                }
+            });
+        }
+    }
+
+    private void bump(Long classId) {
+        versions.merge(classId, 1L, Long::sum);
+        snapshots.remove(classId);
+    }
+
+    private Snapshot snapshot(Long classId) {
+        long version = versions.getOrDefault(classId, 0L);
+        Snapshot cached = snapshots.get(classId);
+        if (cached != null && cached.version() == version) {
+            return cached;
+        }
+
+        // 按名称排序返回，分组后各子列表仍保持有序
+        List<CloudFolder> rows = cloudFolderMapper.findAllWithStatsByClassId(classId);
+        Map<Long, CloudFolder> folders = new HashMap<>(rows.size() * 2);
+        Map<Long, List<CloudFolder>> children = new HashMap<>();
+        for (CloudFolder row : rows) {
+            folders.put(row.getId(), row);
+            children.computeIfAbsent(row.getParentFolderId(), k -> new ArrayList<>()).add(row);
+        }
+        Snapshot loaded = new Snapshot(version, folders, children);
+
+        synchronized (snapshots) {
+            if (versions.getOrDefault(classId, 0L) == version) {
+                snapshots.put(classId, loaded);
+            }
+        }
+        log.debug("加载文件夹树 classId={} version={} folders={}", classId, version, rows.size());
+        return loaded;
+    }
+
+    private CloudFolder copy(Snapshot snapshot, CloudFolder source, boolean withSubtree) {
+        List<CloudFolder> children = snapshot.children().getOrDefault(source.getId(), List.of());
+
+        CloudFolder folder = new CloudFolder(source.getClassId(), source.getName(), source.getParentFolderId(),
+                source.getPath(), source.getCreatorId());
+        folder.setId(source.getId());
+        folder.setCreatedAt(source.getCreatedAt());
+        folder.setUpdatedAt(source.getUpdatedAt());
+        folder.setCreatorName(source.getCreatorName());
+        folder.setFileCount(source.getFileCount());
+        folder.setTotalSize(source.getTotalSize());
+        folder.setFolderCount(children.size());
+        if (withSubtree) {
+            List<CloudFolder> subFolders = new ArrayList<>(children.size());
+            for (CloudFolder child : children) {
+                subFolders.add(copy(snapshot, child, true));
+            }
+            folder.setSubFolders(subFolders);
+        }
+        return folder;
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:02:15
+ * @description StorageQuotaManager - 班级 / 个人云盘配额检查与上传预占
+ */
+package com.tiqs.service.impl;
+
+import com.tiqs.common.BusinessException;
+import com.tiqs.entity.CloudFile;
+import com.tiqs.mapper.CloudFileMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 每个班级、每个用户一份用量：已提交文件的字节数与本节点进行中上传的预占字节数，
+ * 首次使用时按数据库 SUM 加载一次，之后只在内存中增减，上传路径上不再查询数据库。
+ * <p>
+ * {@link #check} 只读内存，用于提前拒绝明显超额的请求。{@link #reserve} 以 CAS 在已提交用量加预占之上计入预占，
+ * 预占随上传事务结束确定：提交后计入已提交用量，回滚后归还。删除在事务提交后扣减已提交用量。
+ * <p>
+ * 其他节点的上传、级联删除、后台清理等绕过本类的变更由定时任务按数据库校准，
+ * 校准前可能短暂超出配额，超出量不超过一个校准周期内其他节点的上传量。
+ */
+@Slf4j
+@Component
+public class StorageQuotaManager {
+
+    private final CloudFileMapper cloudFileMapper;
+
+    private final Map<Long, Usage> classUsage = new ConcurrentHashMap<>();
+    private final Map<Long, Usage> userUsage = new ConcurrentHashMap<>();
+
+    /**
+     * 班级配额（字节），不大于0表示不限制
+     */
+    @Value("${cloud.quota.class-max-bytes:10737418240}")
+    private long classMaxBytes;
+
+    /**
+     * 个人配额（字节），不大于0表示不限制
+     */
+    @Value("${cloud.quota.user-max-bytes:2147483648}")
+    private long userMaxBytes;
+
+    public StorageQuotaManager(CloudFileMapper cloudFileMapper) {
+        this.cloudFileMapper = cloudFileMapper;
+    }
+
+    private static final class Usage {
+        /**
+         * 已提交文件的字节数
+         */
+        private final AtomicLong committed;
+        /**
+         * 本节点进行中上传预占的字节数
+         */
+        private final AtomicLong pending = new AtomicLong();
+
+        private Usage(long committed) {
+            this.committed = new AtomicLong(committed);
+        }
+
+        private long total() {
+            return committed.get() + pending.get();
+        }
+    }
+
+    /**
+     * 不预占空间的快速检查，用于创建分片上传会话时提前拒绝
+     */
+    public void check(Long classId, Long userId, long size) {
+        if (exceeds(classUsage(classId), size, classMaxBytes)) {
+            throw BusinessException.of(413, "班级云盘空间不足");
+        }
+        if (exceeds(userUsage(userId), size, userMaxBytes)) {
+            throw BusinessException.of(413, "个人云盘空间不足");
+        }
+    }
+
+    /**
+     * 为当前事务中的上传预占空间，事务回滚时自动归还。必须在事务内调用；
+     * 超额时抛出异常且不保留任何预占，调用方可以捕获后继续处理其他文件
+     */
+    public void reserve(Long classId, Long userId, long size) {
+        Usage classCounter = classUsage(classId);
+        Usage userCounter = userUsage(userId);
+        check(classId, userId, size);
+
+        if (!tryReserve(classCounter, size, classMaxBytes)) {
+            throw BusinessException.of(413, "班级云盘空间不足");
+        }
+        if (!tryReserve(userCounter, size, userMaxBytes)) {
+            classCounter.pending.addAndGet(-size);
+            throw BusinessException.of(413, "个人云盘空间不足");
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                classCounter.pending.addAndGet(-size);
+                userCounter.pending.addAndGet(-size);
+                if (status == STATUS_COMMITTED) {
+                    classCounter.committed.addAndGet(size);
+                    userCounter.committed.addAndGet(size);
+                } else {
+                    log.debug("上传未完成，归还预占空间 classId={} userId={} size={}", classId, userId, size);
+                }
+            }
+        });
+    }
+
+    /**
+     * 文件记录删除后，在事务提交时归还空间
+     */
+    public void fileRemoved(CloudFile cloudFile) {
+        long size = cloudFile.getFileSize();
+        afterCommit(() -> {
+            subtract(classUsage, cloudFile.getClassId(), size);
+            subtract(userUsage, cloudFile.getUploaderId(), size);
+        });
+    }
+
+    /**
+     * 文件夹删除后，在事务提交时归还班级与各上传者的空间
+     */
+    public void folderContentsRemoved(Long classId, long removedSize, List<CloudFile> uploaderSizes) {
+        afterCommit(() -> {
+            subtract(classUsage, classId, removedSize);
+            for (CloudFile usage : uploaderSizes) {
+                subtract(userUsage, usage.getUploaderId(), usage.getFileSize());
+            }
+        });
+    }
+
+    /**
+     * 按数据库校准缓存的已提交用量；没有文件且没有进行中上传的条目移出缓存
+     */
+    @Scheduled(fixedDelayString = "${cloud.quota.reconcile-interval-ms:300000}",
+            initialDelayString = "${cloud.quota.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            int classes = reconcile(classUsage, this::loadClassTotal);
+            int users = reconcile(userUsage, cloudFileMapper::getTotalSizeByUploaderId);
+            log.debug("配额用量校准完成 classes={} users={}", classes, users);
+        } catch (Exception e) {
+            log.warn("配额用量校准失败: {}", e.getMessage());
+        }
+    }
+
+    private static int reconcile(Map<Long, Usage> usage, Function<Long, Long> loader) {
+        int count = 0;
+        for (Map.Entry<Long, Usage> entry : usage.entrySet()) {
+            long total = loader.apply(entry.getKey());
+            Usage counter = entry.getValue();
+            counter.committed.set(total);
+            if (total == 0 && counter.pending.get() == 0) {
+                usage.remove(entry.getKey(), counter);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 按内存中的已提交用量加上本节点的预占判断，通过时计入预占
+     */
+    private static boolean tryReserve(Usage counter, long size, long limit) {
+        if (limit <= 0) {
+            counter.pending.addAndGet(size);
+            return true;
+        }
+        while (true) {
+            long pending = counter.pending.get();
+            if (counter.committed.get() + pending + size > limit) {
+                return false;
+            }
+            if (counter.pending.compareAndSet(pending, pending + size)) {
+                return true;
+            }
+        }
+    }
+
+    private long loadClassTotal(Long classId) {
+        Long total = cloudFileMapper.getTotalSizeByClassId(classId);
+        return total != null ? total : 0L;
+    }
+
+    private Usage classUsage(Long classId) {
+        return usage(classUsage, classId, this::loadClassTotal);
+    }
+
+    private Usage userUsage(Long userId) {
+        return usage(userUsage, userId, cloudFileMapper::getTotalSizeByUploaderId);
+    }
+
+    /**
+     * 取用量，不存在时从数据库初始化。初始化在锁外进行，并发初始化时以先放入的为准
+     */
+    private static Usage usage(Map<Long, Usage> usage, Long id, Function<Long, Long> loader) {
+        Usage counter = usage.get(id);
+        if (counter != null) {
+            return counter;
+        }
+        Usage loaded = new Usage(loader.apply(id));
+        counter = usage.putIfAbsent(id, loaded);
+        return counter != null ? counter : loaded;
+    }
+
+    private static boolean exceeds(Usage counter, long size, long limit) {
+        return limit > 0 && counter.total() + size > limit;
+    }
+
+    private static void subtract(Map<Long, Usage> usage, Long id, long size) {
+        // 尚未初始化的用量会在首次使用时按数据库读取，无需扣减
+        Usage counter = usage.get(id);
+        if (counter != null) {
+            counter.committed.addAndGet(-size);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
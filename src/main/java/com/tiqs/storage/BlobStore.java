@@ -0,0 +1,79 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 19:05:48
+ * @description BlobStore - 对象存储抽象，上传、下载、删除都经由此接口
+ */
+package com.tiqs.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * key 形如 {@code /cloud/2026/10/18/<sha256>}，与 cloud_files.file_path 一致。
+ * 实现由 {@code cloud.storage.type} 选择：local（默认，upload-dir 下的本地目录）或 s3（S3 兼容对象存储）。
+ * 使用 s3 时应用节点不再依赖共享磁盘，可以水平扩展。
+ */
+public interface BlobStore {
+
+    /**
+     * 对象元数据
+     *
+     * @param lastModified 最后修改时间（毫秒）
+     */
+    record BlobInfo(String key, long length, long lastModified) {
+    }
+
+    /**
+     * 流式写入，写入完成前对读取方不可见
+     *
+     * @param length 内容长度，未知时传 -1（S3 实现会先落到本地临时文件）
+     */
+    void put(String key, InputStream in, long length) throws IOException;
+
+    /**
+     * 将本地文件移入存储，完成后源文件不再存在
+     */
+    void importFile(String key, Path source) throws IOException;
+
+    /**
+     * 在存储内移动对象，目标已存在时覆盖
+     */
+    void move(String sourceKey, String targetKey) throws IOException;
+
+    /**
+     * 顺序读取
+     *
+     * @throws NoSuchFileException 对象不存在
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * 可按区间读取的下载内容
+     *
+     * @param eTagValue 用作 ETag 的值（不含引号），为空时由实现根据元数据生成
+     * @throws NoSuchFileException 对象不存在
+     */
+    ContentSource read(String key, String eTagValue) throws IOException;
+
+    /**
+     * @return 对象元数据，不存在时返回 null
+     */
+    BlobInfo stat(String key) throws IOException;
+
+    default boolean exists(String key) throws IOException {
+        return stat(key) != null;
+    }
+
+    /**
+     * 删除对象，不存在时忽略
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * 遍历 prefix 下的全部对象
+     */
+    void list(String prefix, Consumer<BlobInfo> visitor) throws IOException;
+}
@@ -0,0 +1,76 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 16:31:05
+ * @description BlobSweeper - 后台按固定速率删除已无引用的物理文件
+ */
+package com.tiqs.storage;
+
+import com.tiqs.entity.CloudFileTombstone;
+import com.tiqs.mapper.CloudFileTombstoneMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 每轮最多处理 batch-size 条待清理记录，以控制删除操作对磁盘的压力。
+ * 删除失败的记录累计重试次数，超过上限后不再处理，留待人工排查。
+ */
+@Slf4j
+@Component
+public class BlobSweeper {
+
+    private final ContentStore contentStore;
+    private final CloudFileTombstoneMapper tombstoneMapper;
+
+    @Value("${cloud.gc.batch-size:200}")
+    private int batchSize;
+
+    @Value("${cloud.gc.max-attempts:5}")
+    private int maxAttempts;
+
+    public BlobSweeper(ContentStore contentStore, CloudFileTombstoneMapper tombstoneMapper) {
+        this.contentStore = contentStore;
+        this.tombstoneMapper = tombstoneMapper;
+    }
+
+    @Scheduled(fixedDelayString = "${cloud.gc.sweep-interval-ms:10000}",
+            initialDelayString = "${cloud.gc.sweep-initial-delay-ms:60000}")
+    public void sweep() {
+        List<CloudFileTombstone> tombstones;
+        try {
+            tombstones = tombstoneMapper.findPending(maxAttempts, batchSize);
+        } catch (Exception e) {
+            log.warn("读取待清理文件失败: {}", e.getMessage());
+            return;
+        }
+        if (tombstones.isEmpty()) {
+            return;
+        }
+
+        int deleted = 0;
+        int skipped = 0;
+        int failed = 0;
+        for (CloudFileTombstone tombstone : tombstones) {
+            try {
+                if (contentStore.purge(tombstone)) {
+                    deleted++;
+                } else {
+                    skipped++;
+                }
+            } catch (Exception e) {
+                failed++;
+                log.warn("清理物理文件失败 id={} path={} attempts={}", tombstone.getId(), tombstone.getFilePath(),
+                        tombstone.getAttempts() + 1, e);
+                try {
+                    tombstoneMapper.markFailed(tombstone.getId());
+                } catch (Exception ignored) {
+                    // 下一轮重试
+                }
+            }
+        }
+        log.info("物理文件清理完成 deleted={} reReferenced={} failed={}", deleted, skipped, failed);
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 09:12:40
+ * @description ContentSource - 可按区间读取的下载内容
+ */
+package com.tiqs.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ContentSource {
+
+    /**
+     * 内容总长度（字节）
+     */
+    long length();
+
+    /**
+     * 最后修改时间（毫秒），未知时返回 -1
+     */
+    long lastModified();
+
+    /**
+     * 强校验 ETag（含双引号），未知时返回 null
+     */
+    String eTag();
+
+    /**
+     * 将 [position, position + count) 区间的内容写出到输出流
+     */
+    void transferTo(long position, long count, OutputStream out) throws IOException;
+}
@@ -0,0 +1,439 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 11:02:17
+ * @description ContentStore - 按 SHA-256 去重的云盘物理文件存储，带引用计数
+ */
+package com.tiqs.storage;
+
+import com.tiqs.entity.CloudBlob;
+import com.tiqs.entity.CloudFileTombstone;
+import com.tiqs.mapper.CloudBlobMapper;
+import com.tiqs.mapper.CloudFileMapper;
+import com.tiqs.mapper.CloudFileTombstoneMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 物理文件通过 {@link BlobStore} 读写，key 即 cloud_files.file_path。
+ * 上传内容先写入暂存区并同时计算 SHA-256，再在事务内登记到 cloud_blobs：
+ * 内容首次出现时移动到正式位置，已存在时只增加引用计数并丢弃暂存文件。
+ * 删除时引用计数归零的物理文件登记到 cloud_file_tombstones，由 {@link BlobSweeper} 在后台删除，
+ * 删除前会在行锁下再次确认没有被新的上传重新引用。
+ * <p>
+ * 长期闲置的物理文件由 {@link StorageTieringJob} 压缩后转入冷存储目录（{@code <cold-dir><file_path>.gz}），
+ * 读取时优先使用热存储，不存在时再读取冷存储并边读边解压。
+ */
+@Slf4j
+@Component
+public class ContentStore {
+
+    /**
+     * 暂存区，文件名为 {@code <uuid>.tmp}；LocalBlobStore 启动时清理其中的遗留文件
+     */
+    static final String STAGING_DIR = "/cloud/.staging";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int BATCH_SIZE = 500;
+
+    public static final String TIER_HOT = "HOT";
+    public static final String TIER_COLD = "COLD";
+    /**
+     * 压缩收益不足，保留在热存储且不再尝试
+     */
+    public static final String TIER_INCOMPRESSIBLE = "INCOMPRESSIBLE";
+
+    private static final String COLD_SUFFIX = ".gz";
+
+    private final BlobStore blobStore;
+    private final CloudBlobMapper cloudBlobMapper;
+    private final CloudFileMapper cloudFileMapper;
+    private final CloudFileTombstoneMapper tombstoneMapper;
+    private final TransactionTemplate requiresNew;
+
+    @Value("${cloud.tier.cold-dir:uploads-cold}")
+    private String coldDir;
+
+    /**
+     * 冷存储内容的读取次数，由 {@link StorageTieringJob} 定期取出判断是否提升回热存储
+     */
+    private final Map<String, LongAdder> coldReads = new ConcurrentHashMap<>();
+
+    public ContentStore(BlobStore blobStore, CloudBlobMapper cloudBlobMapper, CloudFileMapper cloudFileMapper,
+                        CloudFileTombstoneMapper tombstoneMapper, PlatformTransactionManager transactionManager) {
+        this.blobStore = blobStore;
+        this.cloudBlobMapper = cloudBlobMapper;
+        this.cloudFileMapper = cloudFileMapper;
+        this.tombstoneMapper = tombstoneMapper;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 暂存区中已计算出哈希的内容
+     */
+    public record StagedContent(String key, String contentHash, long size) {
+    }
+
+    /**
+     * 将输入流写入暂存区，写入过程中同时计算哈希。内容直接流向存储，不在本地落盘
+     *
+     * @param length 内容长度，未知时传 -1
+     */
+    public StagedContent stage(InputStream in, long length) throws IOException {
+        String key = stagingKey();
+        MessageDigest digest = newDigest();
+        CountingInputStream counting = new CountingInputStream(new DigestInputStream(in, digest));
+        blobStore.put(key, counting, length);
+        return new StagedContent(key, HexFormat.of().formatHex(digest.digest()), counting.count);
+    }
+
+    /**
+     * 对已经在本地磁盘上组装好的文件（如分片上传的数据文件）计算哈希，再移入存储的暂存区
+     */
+    public StagedContent stageFile(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        String key = stagingKey();
+        blobStore.importFile(key, file);
+        return new StagedContent(key, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * 登记暂存内容并返回其物理文件路径（相对 upload-dir）。需在调用方事务内执行，
+     * cloud_blobs 行锁保证同一内容的并发上传只会落盘一份。
+     */
+    @Transactional
+    public String commit(StagedContent staged) throws IOException {
+        CloudBlob blob = new CloudBlob();
+        blob.setContentHash(staged.contentHash());
+        blob.setFilePath(shardedPath(staged.contentHash()));
+        blob.setFileSize(staged.size());
+
+        if (cloudBlobMapper.insertOrReference(blob) == 1) {
+            blobStore.move(staged.key(), blob.getFilePath());
+            cleanupOnRollback(blob.getContentHash(), blob.getFilePath());
+            log.debug("新增物理文件 hash={} path={}", staged.contentHash(), blob.getFilePath());
+            return blob.getFilePath();
+        }
+
+        CloudBlob existing = cloudBlobMapper.findByHash(staged.contentHash());
+        if (exists(existing.getFilePath())) {
+            blobStore.delete(staged.key());
+        } else {
+            // 记录存在但文件丢失，用本次上传的内容修复
+            log.warn("物理文件缺失，使用新上传内容修复 hash={} path={}", staged.contentHash(), existing.getFilePath());
+            blobStore.move(staged.key(), existing.getFilePath());
+            cloudBlobMapper.updateTier(staged.contentHash(), TIER_COLD, TIER_HOT);
+        }
+        log.debug("复用已有物理文件 hash={} refCount={}", staged.contentHash(), existing.getRefCount());
+        return existing.getFilePath();
+    }
+
+    /**
+     * 丢弃未登记的暂存内容
+     */
+    public void discard(StagedContent staged) {
+        if (staged == null) {
+            return;
+        }
+        try {
+            blobStore.delete(staged.key());
+        } catch (IOException e) {
+            log.warn("删除暂存文件失败 key={}", staged.key(), e);
+        }
+    }
+
+    /**
+     * 释放一次引用，最后一个引用释放时登记待清理。
+     * 未登记哈希的历史文件直接登记待清理。
+     */
+    @Transactional
+    public void release(String contentHash, String filePath) {
+        if (contentHash == null) {
+            tombstoneMapper.insert(filePath, null);
+            return;
+        }
+        cloudBlobMapper.decrementRefCount(contentHash);
+        if (tombstoneMapper.insertUnreferencedBlobs(List.of(contentHash)) > 0) {
+            log.info("物理文件已无引用，等待后台清理 hash={} path={}", contentHash, filePath);
+        }
+    }
+
+    /**
+     * 批量释放引用，用于文件夹删除等批量场景，语句数量与文件数无关（按批次）
+     *
+     * @param refs 按物理文件汇总的引用，refCount 为本次释放的引用数
+     */
+    @Transactional
+    public void releaseAll(List<CloudBlob> refs) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        List<String> legacyPaths = new ArrayList<>();
+        for (CloudBlob ref : refs) {
+            if (ref.getContentHash() == null) {
+                legacyPaths.add(ref.getFilePath());
+            } else {
+                counts.merge(ref.getContentHash(), ref.getRefCount().longValue(), Long::sum);
+            }
+        }
+
+        List<String> hashes = new ArrayList<>(counts.keySet());
+        int tombstones = 0;
+        for (int from = 0; from < hashes.size(); from += BATCH_SIZE) {
+            List<String> batch = hashes.subList(from, Math.min(from + BATCH_SIZE, hashes.size()));
+            Map<String, Long> batchCounts = new LinkedHashMap<>();
+            batch.forEach(hash -> batchCounts.put(hash, counts.get(hash)));
+            cloudBlobMapper.subtractRefCounts(batchCounts);
+            tombstones += tombstoneMapper.insertUnreferencedBlobs(batch);
+        }
+        for (int from = 0; from < legacyPaths.size(); from += BATCH_SIZE) {
+            tombstones += tombstoneMapper.insertPaths(legacyPaths.subList(from, Math.min(from + BATCH_SIZE, legacyPaths.size())));
+        }
+        log.info("批量释放物理文件引用 blobs={} legacyFiles={} tombstones={}", hashes.size(), legacyPaths.size(), tombstones);
+    }
+
+    /**
+     * 删除一条待清理记录对应的物理文件。持有 cloud_blobs 行锁期间确认没有被重新引用再删除，
+     * 避免与同内容的并发上传交错。
+     *
+     * @return 是否删除了磁盘文件；被重新引用时只移除待清理记录
+     */
+    @Transactional
+    public boolean purge(CloudFileTombstone tombstone) throws IOException {
+        String contentHash = tombstone.getContentHash();
+        boolean referenced = false;
+        if (contentHash != null) {
+            CloudBlob blob = cloudBlobMapper.findByHashForUpdate(contentHash);
+            referenced = blob != null && blob.getRefCount() > 0;
+        }
+        if (!referenced) {
+            referenced = cloudFileMapper.countByFilePath(tombstone.getFilePath()) > 0;
+        }
+
+        if (!referenced) {
+            blobStore.delete(tombstone.getFilePath());
+            blobStore.delete(tombstone.getFilePath() + ThumbnailGenerator.THUMBNAIL_SUFFIX);
+            blobStore.delete(tombstone.getFilePath() + ThumbnailGenerator.FAILED_SUFFIX);
+            Files.deleteIfExists(resolveCold(tombstone.getFilePath()));
+            if (contentHash != null) {
+                cloudBlobMapper.deleteIfUnreferenced(contentHash);
+            }
+        }
+        tombstoneMapper.delete(tombstone.getId());
+        return !referenced;
+    }
+
+    /**
+     * 物理文件在冷存储中的压缩副本位置
+     */
+    public Path resolveCold(String filePath) {
+        return Paths.get(coldDir + filePath + COLD_SUFFIX);
+    }
+
+    public boolean exists(String filePath) throws IOException {
+        return blobStore.exists(filePath) || Files.isRegularFile(resolveCold(filePath));
+    }
+
+    /**
+     * 打开下载内容，冷存储中的文件边读边解压
+     *
+     * @param size 原始文件大小
+     * @throws NoSuchFileException 两层存储中都不存在
+     */
+    public ContentSource open(String filePath, String contentHash, long size) throws IOException {
+        try {
+            return blobStore.read(filePath, contentHash);
+        } catch (NoSuchFileException e) {
+            Path cold = resolveCold(filePath);
+            if (!Files.isRegularFile(cold)) {
+                throw e;
+            }
+            if (contentHash != null) {
+                coldReads.computeIfAbsent(contentHash, k -> new LongAdder()).increment();
+            }
+            return new GzipContentSource(cold, size, contentHash);
+        }
+    }
+
+    /**
+     * 打开顺序读取的输入流，用于打包下载、缩略图生成等场景
+     */
+    public InputStream openStream(String filePath) throws IOException {
+        try {
+            return blobStore.open(filePath);
+        } catch (NoSuchFileException e) {
+            Path cold = resolveCold(filePath);
+            if (!Files.isRegularFile(cold)) {
+                throw e;
+            }
+            return GzipContentSource.open(cold);
+        }
+    }
+
+    /**
+     * 取出并清空冷存储读取次数
+     */
+    public Map<String, Long> drainColdReads() {
+        Map<String, Long> reads = new HashMap<>();
+        for (String hash : coldReads.keySet()) {
+            LongAdder counter = coldReads.remove(hash);
+            if (counter != null) {
+                reads.put(hash, counter.sum());
+            }
+        }
+        return reads;
+    }
+
+    /**
+     * 将压缩好的副本移入冷存储并标记层级。持有 cloud_blobs 行锁，不会与清理或重新引用交错；
+     * 返回 true 后由调用方删除热存储文件。
+     */
+    @Transactional
+    public boolean moveToCold(String contentHash, Path compressed) throws IOException {
+        CloudBlob blob = cloudBlobMapper.findByHashForUpdate(contentHash);
+        if (blob == null || blob.getRefCount() <= 0 || !TIER_HOT.equals(blob.getStorageTier())) {
+            Files.deleteIfExists(compressed);
+            return false;
+        }
+        Path target = resolveCold(blob.getFilePath());
+        Files.createDirectories(target.getParent());
+        Files.move(compressed, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        cloudBlobMapper.updateTier(contentHash, TIER_HOT, TIER_COLD);
+        return true;
+    }
+
+    /**
+     * 将解压后重新暂存的内容移回热存储并标记层级，返回 true 后由调用方删除冷存储副本
+     */
+    @Transactional
+    public boolean moveToHot(String contentHash, StagedContent restored) throws IOException {
+        CloudBlob blob = cloudBlobMapper.findByHashForUpdate(contentHash);
+        if (blob == null || blob.getRefCount() <= 0 || !TIER_COLD.equals(blob.getStorageTier())) {
+            discard(restored);
+            return false;
+        }
+        if (!contentHash.equals(restored.contentHash())) {
+            discard(restored);
+            throw new IOException("冷存储副本内容校验失败: " + blob.getFilePath());
+        }
+        blobStore.move(restored.key(), blob.getFilePath());
+        cloudBlobMapper.updateTier(contentHash, TIER_COLD, TIER_HOT);
+        return true;
+    }
+
+    /**
+     * 按哈希前两级分目录（/cloud/ab/cd/abcd...），每个目录下的文件数与上传时间分布无关。
+     * 已有文件保留登记时的路径
+     */
+    static String shardedPath(String contentHash) {
+        return "/cloud/" + contentHash.substring(0, 2) + "/" + contentHash.substring(2, 4) + "/" + contentHash;
+    }
+
+    /**
+     * 新物理文件已移动到位但上传事务回滚时，cloud_blobs 记录随之消失，文件登记待清理。
+     * 登记在独立事务中进行；删除前 BlobSweeper 会在行锁下确认没有被同内容的其他上传重新登记
+     */
+    private void cleanupOnRollback(String contentHash, String filePath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    requiresNew.executeWithoutResult(s -> tombstoneMapper.insert(filePath, contentHash));
+                    log.info("上传事务回滚，物理文件登记待清理 hash={} path={}", contentHash, filePath);
+                } catch (Exception e) {
+                    log.warn("登记待清理文件失败，留待孤儿文件扫描 path={}: {}", filePath, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private String stagingKey() {
+        return STAGING_DIR + "/" + UUID.randomUUID() + ".tmp";
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 统计实际读取的字节数
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * 摘要无法回退，禁止 mark/reset，由调用方自行缓冲重试
+         */
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
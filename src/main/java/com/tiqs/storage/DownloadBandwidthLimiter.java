@@ -0,0 +1,280 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 21:48:13
+ * @description DownloadBandwidthLimiter - 下载带宽整形：按用户限速、全局总量上限、按权重公平分配
+ */
+package com.tiqs.storage;
+
+import com.tiqs.common.BusinessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 同一用户的所有下载连接共用一个令牌桶，多开连接的下载工具拿不到更多带宽。
+ * 配置了全局上限时，按活跃用户的权重做加权最大最小公平分配：
+ * 受个人上限约束的用户用不完的份额分给其他用户；教师属于优先级，权重更高且可单独配置个人上限。
+ * 各用户的速率在下载开始和结束时重新计算，全局令牌桶兜底保证总量不超限。
+ * <p>
+ * 每个下载流至少分到每秒一个传输块（64KB），活跃用户很多时不会被压到几乎停止。
+ * 限速等待期间下载流一直占用一个 Servlet 线程，同时限速的下载流数量不超过 max-streams，
+ * 超出时拒绝新的下载，避免慢速下载占满线程池；max-streams 应小于 server.tomcat.threads.max。
+ */
+@Component
+public class DownloadBandwidthLimiter {
+
+    /**
+     * @param throttledBytes  因限速而等待过的字节数
+     * @param throttledMillis 累计限速等待时间
+     */
+    public record BandwidthStats(long globalBytesPerSecond, int activeUsers, int activeStreams, int maxStreams,
+                                 long totalBytes, long throttledBytes, long throttledMillis, long rejectedStreams) {
+    }
+
+    /**
+     * 每个下载流的最低速率：每秒一个传输块
+     */
+    private static final long MIN_STREAM_BYTES_PER_SECOND = 64 * 1024;
+
+    private final long globalRate;
+    private final long userRate;
+    private final long teacherRate;
+    private final int teacherWeight;
+    private final int maxStreams;
+    private final TokenBucket globalBucket;
+
+    /**
+     * 活跃用户，访问需持有 this 锁
+     */
+    private final Map<Long, UserShare> active = new HashMap<>();
+    private int activeStreams;
+
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder throttledBytes = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LongAdder rejectedStreams = new LongAdder();
+
+    public DownloadBandwidthLimiter(@Value("${cloud.download.bandwidth.global-bytes-per-second:0}") long globalRate,
+                                    @Value("${cloud.download.bandwidth.user-bytes-per-second:0}") long userRate,
+                                    @Value("${cloud.download.bandwidth.teacher-bytes-per-second:0}") long teacherRate,
+                                    @Value("${cloud.download.bandwidth.teacher-weight:4}") int teacherWeight,
+                                    @Value("${cloud.download.bandwidth.max-streams:100}") int maxStreams) {
+        this.globalRate = globalRate;
+        this.userRate = userRate;
+        this.teacherRate = teacherRate;
+        this.teacherWeight = Math.max(1, teacherWeight);
+        this.maxStreams = Math.max(1, maxStreams);
+        this.globalBucket = new TokenBucket(globalRate);
+    }
+
+    public boolean isEnabled() {
+        return globalRate > 0 || userRate > 0 || teacherRate > 0;
+    }
+
+    /**
+     * 登记一个下载流，关闭返回的 Lease 时注销。应在写出任何响应头之前调用
+     *
+     * @param priority 是否属于优先级（教师）
+     * @throws BusinessException 限速的下载流已达上限
+     */
+    public Lease open(Long userId, boolean priority) {
+        Lease lease = tryOpen(userId, priority);
+        if (lease == null) {
+            throw BusinessException.of(503, "当前下载人数过多，请稍后重试");
+        }
+        return lease;
+    }
+
+    /**
+     * 同 {@link #open}，限速的下载流已达上限时返回 null
+     */
+    public Lease tryOpen(Long userId, boolean priority) {
+        if (!isEnabled()) {
+            return new Lease(null);
+        }
+        Long key = userId != null ? userId : 0L;
+        UserShare share;
+        synchronized (this) {
+            if (activeStreams >= maxStreams) {
+                rejectedStreams.increment();
+                return null;
+            }
+            share = active.computeIfAbsent(key, id -> priority
+                    ? new UserShare(id, teacherWeight, teacherRate)
+                    : new UserShare(id, 1, userRate));
+            share.streams++;
+            activeStreams++;
+            // 最低速率随下载流数量变化，每次都重新分配
+            rebalance();
+        }
+        return new Lease(share);
+    }
+
+    public BandwidthStats stats() {
+        int users;
+        int streams;
+        synchronized (this) {
+            users = active.size();
+            streams = activeStreams;
+        }
+        return new BandwidthStats(globalRate, users, streams, maxStreams, totalBytes.sum(), throttledBytes.sum(),
+                TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum()), rejectedStreams.sum());
+    }
+
+    private void release(UserShare share) {
+        synchronized (this) {
+            share.streams--;
+            activeStreams--;
+            if (share.streams == 0) {
+                active.remove(share.userId);
+            }
+            rebalance();
+        }
+    }
+
+    /**
+     * 加权最大最小公平：按“个人上限 / 权重”从小到大依次分配，
+     * 每个用户取剩余带宽中按权重应得的份额与个人上限的较小值，
+     * 但不低于每个下载流的最低速率（显式配置的个人上限更低时以个人上限为准）
+     */
+    private void rebalance() {
+        if (globalRate <= 0) {
+            return;
+        }
+        List<UserShare> shares = new ArrayList<>(active.values());
+        shares.sort(Comparator.comparingDouble(share -> share.cap > 0 ? (double) share.cap / share.weight : Double.MAX_VALUE));
+        long remaining = globalRate;
+        int remainingWeight = shares.stream().mapToInt(share -> share.weight).sum();
+        for (UserShare share : shares) {
+            long fair = remaining * share.weight / remainingWeight;
+            long rate = Math.max(fair, MIN_STREAM_BYTES_PER_SECOND * share.streams);
+            if (share.cap > 0) {
+                rate = Math.min(share.cap, rate);
+            }
+            share.bucket.setRate(rate);
+            remaining = Math.max(0, remaining - rate);
+            remainingWeight -= share.weight;
+        }
+    }
+
+    private void consume(UserShare share, int bytes) throws IOException {
+        long wait = Math.max(share.bucket.reserve(bytes), globalBucket.reserve(bytes));
+        if (wait > 0) {
+            throttledBytes.add(bytes);
+            throttledNanos.add(wait);
+            TokenBucket.pause(wait);
+        }
+        totalBytes.add(bytes);
+    }
+
+    private static final class UserShare {
+        private final Long userId;
+        private final int weight;
+        private final long cap;
+        private final TokenBucket bucket;
+        private int streams;
+
+        private UserShare(Long userId, int weight, long cap) {
+            this.userId = userId;
+            this.weight = weight;
+            this.cap = cap;
+            this.bucket = new TokenBucket(cap);
+        }
+    }
+
+    /**
+     * 一个活跃的下载流，覆盖一次请求的全部输出（包括多段 Range 响应的各段）
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final UserShare share;
+        private boolean closed;
+
+        private Lease(UserShare share) {
+            this.share = share;
+        }
+
+        /**
+         * 包装下载内容，写出时按该用户的份额限速
+         */
+        public ContentSource throttle(ContentSource content) {
+            return share == null ? content : new ThrottledContentSource(content, this);
+        }
+
+        /**
+         * 包装输出流，关闭包装流不会关闭底层输出流
+         */
+        public OutputStream wrap(OutputStream out) {
+            if (share == null) {
+                return out;
+            }
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    consume(share, 1);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    consume(share, len);
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.flush();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            if (share != null && !closed) {
+                closed = true;
+                release(share);
+            }
+        }
+    }
+
+    private static final class ThrottledContentSource implements ContentSource {
+
+        private final ContentSource delegate;
+        private final Lease lease;
+
+        private ThrottledContentSource(ContentSource delegate, Lease lease) {
+            this.delegate = delegate;
+            this.lease = lease;
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public long lastModified() {
+            return delegate.lastModified();
+        }
+
+        @Override
+        public String eTag() {
+            return delegate.eTag();
+        }
+
+        @Override
+        public void transferTo(long position, long count, OutputStream out) throws IOException {
+            delegate.transferTo(position, count, lease.wrap(out));
+        }
+    }
+}
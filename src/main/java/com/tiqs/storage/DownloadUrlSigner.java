@@ -0,0 +1,163 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 19:48:52
+ * @description DownloadUrlSigner - 生成和校验带 HMAC 签名的限时下载链接
+ */
+package com.tiqs.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 下载所需的全部信息（物理文件、大小、文件名、过期时间）都放在签名令牌中，
+ * 校验只需一次 HMAC 计算，下载时不解析 JWT。
+ * 令牌格式：base64url(载荷).base64url(HMAC-SHA256(载荷))。
+ * <p>
+ * 签名密钥 cloud.download.signing-secret 必须单独配置，不回退到 JWT 密钥或内置值，未配置或过短时启动失败。
+ * <p>
+ * 文件删除或修改（如改为私有）时登记撤销时间，此前签发的链接在本节点立即失效，兑现时仍不查询数据库。
+ * 撤销记录只需保留一个有效期，之后此前签发的链接都已过期；其他节点上的链接最迟在有效期结束时失效。
+ */
+@Component
+public class DownloadUrlSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String SEPARATOR = "\n";
+    private static final int FIELD_COUNT = 9;
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final SecretKeySpec key;
+
+    /**
+     * 文件 id / 班级 id -> 撤销时间（毫秒），在此之前签发的链接无效
+     */
+    private final Map<Long, Long> revokedFiles = new ConcurrentHashMap<>();
+    private final Map<Long, Long> revokedClasses = new ConcurrentHashMap<>();
+
+    @Value("${cloud.download.url-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    public DownloadUrlSigner(@Value("${cloud.download.signing-secret}") String secret) {
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secret.isBlank() || secretBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("cloud.download.signing-secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+    }
+
+    /**
+     * 现在签发的链接的过期时间（毫秒）
+     */
+    public long nextExpiry() {
+        return System.currentTimeMillis() + ttlSeconds * 1000;
+    }
+
+    /**
+     * 令牌中携带的下载信息
+     *
+     * @param expiresAt 过期时间（毫秒）
+     * @param userId    签发链接的用户，下载时按其身份限速
+     * @param priority  签发用户是否属于下载带宽优先级（教师）
+     */
+    public record SignedDownload(Long fileId, Long classId, String filePath, String contentHash, long fileSize,
+                                 long expiresAt, Long userId, boolean priority, String fileName) {
+    }
+
+    /**
+     * 文件删除或修改后调用，此前为该文件签发的链接失效
+     */
+    public void revoke(Long fileId) {
+        revoke(revokedFiles, fileId);
+    }
+
+    /**
+     * 批量删除班级内的文件（如删除文件夹）后调用，此前为该班级文件签发的链接失效
+     */
+    public void revokeClass(Long classId) {
+        revoke(revokedClasses, classId);
+    }
+
+    public String sign(SignedDownload download) {
+        String payload = String.join(SEPARATOR, String.valueOf(download.fileId()), String.valueOf(download.classId()),
+                download.filePath(),
+                download.contentHash() != null ? download.contentHash() : "", String.valueOf(download.fileSize()),
+                String.valueOf(download.expiresAt()), String.valueOf(download.userId()), download.priority() ? "1" : "0",
+                download.fileName());
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(hmac(payloadBytes));
+    }
+
+    /**
+     * @return 签名有效、未过期且未被撤销时返回下载信息，否则返回 null
+     */
+    public SignedDownload verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payloadBytes = decoder.decode(token.substring(0, dot));
+            signature = decoder.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // 常量时间比较，避免通过响应时间逐字节猜测签名
+        if (!MessageDigest.isEqual(hmac(payloadBytes), signature)) {
+            return null;
+        }
+
+        String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split(SEPARATOR, FIELD_COUNT);
+        if (fields.length != FIELD_COUNT) {
+            return null;
+        }
+        try {
+            SignedDownload download = new SignedDownload(Long.valueOf(fields[0]), Long.valueOf(fields[1]), fields[2],
+                    fields[3].isEmpty() ? null : fields[3], Long.parseLong(fields[4]), Long.parseLong(fields[5]),
+                    Long.valueOf(fields[6]), "1".equals(fields[7]), fields[8]);
+            if (download.expiresAt() < System.currentTimeMillis()) {
+                return null;
+            }
+            long issuedAt = download.expiresAt() - ttlSeconds * 1000;
+            return isRevoked(revokedFiles, download.fileId(), issuedAt)
+                    || isRevoked(revokedClasses, download.classId(), issuedAt) ? null : download;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void revoke(Map<Long, Long> revoked, Long id) {
+        long now = System.currentTimeMillis();
+        revoked.put(id, now);
+        // 超过一个有效期的撤销记录已无意义
+        long cutoff = now - ttlSeconds * 1000;
+        revoked.values().removeIf(revokedAt -> revokedAt < cutoff);
+    }
+
+    private static boolean isRevoked(Map<Long, Long> revoked, Long id, long issuedAt) {
+        Long revokedAt = revoked.get(id);
+        return revokedAt != null && issuedAt <= revokedAt;
+    }
+
+    private byte[] hmac(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
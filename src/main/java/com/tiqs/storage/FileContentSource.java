@@ -0,0 +1,71 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 09:12:40
+ * @description FileContentSource - 基于本地文件的下载内容，使用 FileChannel.transferTo 零拷贝输出
+ */
+package com.tiqs.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class FileContentSource implements ContentSource {
+
+    private final Path path;
+    private final long length;
+    private final long lastModified;
+    private final String contentHash;
+
+    public FileContentSource(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * @param contentHash 内容哈希，已知时作为 ETag，使同一内容在各节点上的 ETag 一致
+     */
+    public FileContentSource(Path path, String contentHash) throws IOException {
+        this.path = path;
+        this.length = Files.size(path);
+        this.lastModified = Files.getLastModifiedTime(path).toMillis();
+        this.contentHash = contentHash;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String eTag() {
+        if (contentHash != null) {
+            return "\"" + contentHash + "\"";
+        }
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    @Override
+    public void transferTo(long position, long count, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long end = position + count;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    // 文件在传输过程中被截断
+                    throw new IOException("文件读取不完整: " + path);
+                }
+                position += transferred;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:40:26
+ * @description GzipContentSource - 冷存储中的 gzip 压缩文件，下载时边读边解压
+ */
+package com.tiqs.storage;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * gzip 不支持随机访问，区间请求需要从头解压并跳过 position 之前的内容；
+ * 冷文件很少被访问，且频繁访问后会被提升回热存储，因此不额外建立索引。
+ */
+public class GzipContentSource implements ContentSource {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final long length;
+    private final long lastModified;
+    private final String contentHash;
+
+    /**
+     * @param length 解压后的原始长度
+     */
+    public GzipContentSource(Path path, long length, String contentHash) throws IOException {
+        this.path = path;
+        this.length = length;
+        this.lastModified = Files.getLastModifiedTime(path).toMillis();
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * 打开解压后的顺序输入流
+     */
+    public static InputStream open(Path path) throws IOException {
+        return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String eTag() {
+        // 与热存储使用同一 ETag，文件在两层之间移动不会使客户端缓存和断点续传失效
+        if (contentHash != null) {
+            return "\"" + contentHash + "\"";
+        }
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    @Override
+    public void transferTo(long position, long count, OutputStream out) throws IOException {
+        try (InputStream in = open(path)) {
+            in.skipNBytes(position);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = count;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("文件读取不完整: " + path);
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+}
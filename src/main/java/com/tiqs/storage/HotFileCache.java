@@ -0,0 +1,347 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 23:14:37
+ * @description HotFileCache - 小型热门云盘文件的堆外内存缓存（分段 LRU，按字节预算淘汰）
+ */
+package com.tiqs.storage;
+
+import com.tiqs.entity.CloudFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存文件内容（DirectByteBuffer，不占用堆），命中时不读磁盘；调用方先查出当前记录再用其内容哈希取缓存。
+ * <p>
+ * 分段 LRU：新条目进入试用段，在试用段中再次命中后晋升到保护段；保护段超出预算时最久未用的条目降回试用段，
+ * 淘汰只发生在试用段。批量下载一遍的冷门文件只会经过试用段，不会挤掉真正的热门文件。
+ * 文件第一次未命中时只记下 id，近期第二次未命中才分配堆外内存读入，只下载一次的文件不会分配缓冲区。
+ * <p>
+ * 条目以文件 id 为键并记录内容哈希作为版本，读取时必须给出当前记录的内容哈希，不一致视为未命中；
+ * 文件记录修改或删除时失效（事务提交后再失效一次）。
+ * 加载前取得的失效序号在加载期间发生变化时不写入缓存，避免并发读取到的旧记录被缓存。
+ */
+@Component
+public class HotFileCache {
+
+    /**
+     * 保护段占总预算的比例
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    /**
+     * 记录最近未命中过一次的文件 id 数量上限
+     */
+    private static final int DOORKEEPER_SIZE = 4096;
+
+    public record CacheStats(long maxBytes, long usedBytes, int entries, long hits, long misses, long evictions) {
+    }
+
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final long protectedMaxBytes;
+
+    /**
+     * 两个段均按访问先后排列（最久未用在前），访问需持有 this 锁
+     */
+    private final LinkedHashMap<Long, Node> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<Long, Node> protectedSegment = new LinkedHashMap<>();
+    private long probationBytes;
+    private long protectedBytes;
+
+    /**
+     * 最近未命中过一次、尚未读入缓存的文件 id，按访问先后排列，访问需持有 this 锁
+     */
+    private final LinkedHashMap<Long, Boolean> doorkeeper = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > DOORKEEPER_SIZE;
+        }
+    };
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HotFileCache(@Value("${cloud.hot-cache.max-bytes:268435456}") long maxBytes,
+                        @Value("${cloud.hot-cache.max-file-bytes:4194304}") long maxFileBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxFileBytes = Math.min(Math.min(maxFileBytes, this.maxBytes), Integer.MAX_VALUE);
+        this.protectedMaxBytes = (long) (this.maxBytes * PROTECTED_RATIO);
+    }
+
+    private static final class Node {
+        private final String contentHash;
+        private final Long classId;
+        private final ByteBuffer buffer;
+        private final long lastModified;
+
+        private Node(String contentHash, Long classId, ByteBuffer buffer, long lastModified) {
+            this.contentHash = contentHash;
+            this.classId = classId;
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+        }
+
+        private long size() {
+            return buffer.capacity();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxFileBytes > 0;
+    }
+
+    /**
+     * 在读取文件记录之前调用，结果传给 {@link #put}
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * @param contentHash 当前文件记录的内容哈希，为 null 时无法校验版本，直接视为未命中
+     * @return 基于缓存的内容，未命中时返回 null
+     */
+    public ContentSource get(Long fileId, String contentHash) {
+        if (!isEnabled() || contentHash == null) {
+            return null;
+        }
+        Node node;
+        synchronized (this) {
+            node = probation.remove(fileId);
+            if (node != null) {
+                probationBytes -= node.size();
+                promote(fileId, node);
+            } else {
+                node = protectedSegment.remove(fileId);
+                if (node != null) {
+                    // 重新插入移到队尾
+                    protectedSegment.put(fileId, node);
+                }
+            }
+        }
+        if (node == null || !contentHash.equals(node.contentHash)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new BufferContentSource(node.buffer, node.contentHash, node.lastModified);
+    }
+
+    /**
+     * 文件足够小且近期第二次未命中时读入缓存并返回基于缓存的内容，否则原样返回 content
+     *
+     * @param stamp 读取文件记录之前的 {@link #stamp()}
+     */
+    public ContentSource put(CloudFile file, ContentSource content, long stamp) throws IOException {
+        long length = content.length();
+        if (!isEnabled() || length > maxFileBytes || file.getContentHash() == null) {
+            return content;
+        }
+        // 先判断是否准入，未准入时不分配缓冲区也不读取内容
+        synchronized (this) {
+            if (stamp != invalidations.get() || probation.containsKey(file.getId())
+                    || protectedSegment.containsKey(file.getId()) || !admit(file.getId())) {
+                return content;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        content.transferTo(0, length, new BufferOutputStream(buffer));
+        if (buffer.hasRemaining()) {
+            throw new IOException("文件读取不完整: " + file.getFilePath());
+        }
+        buffer.flip();
+        Node node = new Node(file.getContentHash(), file.getClassId(), buffer.asReadOnlyBuffer(), content.lastModified());
+
+        // 读取期间可能已失效或被其他请求写入
+        synchronized (this) {
+            if (stamp == invalidations.get() && !probation.containsKey(file.getId())
+                    && !protectedSegment.containsKey(file.getId())) {
+                probation.put(file.getId(), node);
+                probationBytes += node.size();
+                evict();
+            }
+        }
+        return new BufferContentSource(node.buffer, file.getContentHash(), node.lastModified);
+    }
+
+    /**
+     * 文件记录修改或删除时调用，事务内调用时提交后会再失效一次
+     */
+    public void invalidate(Long fileId) {
+        remove(fileId);
+        afterCommit(() -> remove(fileId));
+    }
+
+    /**
+     * 批量删除班级内的文件（如删除文件夹）时调用
+     */
+    public void invalidateClass(Long classId) {
+        removeClass(classId);
+        afterCommit(() -> removeClass(classId));
+    }
+
+    public CacheStats stats() {
+        synchronized (this) {
+            return new CacheStats(maxBytes, probationBytes + protectedBytes, probation.size() + protectedSegment.size(),
+                    hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    /**
+     * 第一次未命中只记录 id，近期再次未命中才准入
+     */
+    private boolean admit(Long fileId) {
+        if (doorkeeper.remove(fileId) != null) {
+            return true;
+        }
+        doorkeeper.put(fileId, Boolean.TRUE);
+        return false;
+    }
+
+    private synchronized void remove(Long fileId) {
+        invalidations.incrementAndGet();
+        Node node = probation.remove(fileId);
+        if (node != null) {
+            probationBytes -= node.size();
+        }
+        node = protectedSegment.remove(fileId);
+        if (node != null) {
+            protectedBytes -= node.size();
+        }
+    }
+
+    private synchronized void removeClass(Long classId) {
+        invalidations.incrementAndGet();
+        probationBytes -= removeClass(probation, classId);
+        protectedBytes -= removeClass(protectedSegment, classId);
+    }
+
+    private static long removeClass(Map<Long, Node> segment, Long classId) {
+        long removed = 0;
+        Iterator<Node> iterator = segment.values().iterator();
+        while (iterator.hasNext()) {
+            Node node = iterator.next();
+            if (Objects.equals(node.classId, classId)) {
+                removed += node.size();
+                iterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 晋升到保护段，保护段超出预算时把最久未用的条目降回试用段
+     */
+    private void promote(Long fileId, Node node) {
+        protectedSegment.put(fileId, node);
+        protectedBytes += node.size();
+        Iterator<Map.Entry<Long, Node>> iterator = protectedSegment.entrySet().iterator();
+        while (protectedBytes > protectedMaxBytes && iterator.hasNext()) {
+            Map.Entry<Long, Node> eldest = iterator.next();
+            iterator.remove();
+            protectedBytes -= eldest.getValue().size();
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationBytes += eldest.getValue().size();
+        }
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Node> iterator = probation.values().iterator();
+        while (probationBytes + protectedBytes > maxBytes && iterator.hasNext()) {
+            probationBytes -= iterator.next().size();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static final class BufferOutputStream extends OutputStream {
+        private final ByteBuffer buffer;
+
+        private BufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("内容超出声明的长度");
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.remaining()) {
+                throw new IOException("内容超出声明的长度");
+            }
+            buffer.put(b, off, len);
+        }
+    }
+
+    private static final class BufferContentSource implements ContentSource {
+        private final ByteBuffer buffer;
+        private final String contentHash;
+        private final long lastModified;
+
+        private BufferContentSource(ByteBuffer buffer, String contentHash, long lastModified) {
+            this.buffer = buffer;
+            this.contentHash = contentHash;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public long length() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String eTag() {
+            return "\"" + contentHash + "\"";
+        }
+
+        @Override
+        public void transferTo(long position, long count, OutputStream out) throws IOException {
+            // 每次输出使用独立的视图，不影响并发读取；条目被淘汰后缓冲区在最后一个读取方结束后才被回收
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) position).limit((int) (position + count));
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 19:05:48
+ * @description LocalBlobStore - 基于本地目录（upload-dir）的对象存储
+ */
+package com.tiqs.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 写入先落到临时目录（upload-dir/cloud/.tmp，与目标位于同一文件系统）再原子重命名，读取方不会看到写了一半的文件。
+ * 下载使用 {@link FileContentSource} 零拷贝输出。
+ * <p>
+ * 持久化级别由 {@code cloud.storage.local.durability} 控制：
+ * none 交给操作系统回写；fdatasync 在重命名前刷写文件数据；fsync 同时刷写文件元数据。
+ * 后两者在重命名后还会刷写所在目录，保证掉电后新文件名不会丢失。
+ * 进程异常退出留下的临时文件在启动后清理，只检查临时目录和暂存区，不遍历整个 upload-dir，
+ * 也不会误删用户上传的扩展名为 .tmp 的文件。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cloud.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String TEMP_DIR = "/cloud/.tmp";
+    /**
+     * put() 的临时文件与暂存区文件的命名：{@code <uuid>.tmp}
+     */
+    private static final Pattern TEMP_NAME = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.tmp");
+
+    public enum Durability {
+        NONE, FDATASYNC, FSYNC
+    }
+
+    private final Path root;
+    private final Durability durability;
+    private final long startedAt = System.currentTimeMillis();
+
+    public LocalBlobStore(@Value("${file.upload-dir:uploads}") String uploadDir,
+                          @Value("${cloud.storage.local.durability:fdatasync}") String durability) {
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.durability = Durability.valueOf(durability.trim().toUpperCase());
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Path tempDir = resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        Path temp = tempDir.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                in.transferTo(Channels.newOutputStream(channel));
+                force(channel);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        syncDirectory(target.getParent());
+    }
+
+    @Override
+    public void importFile(String key, Path source) throws IOException {
+        if (durability != Durability.NONE) {
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+                force(channel);
+            }
+        }
+        rename(source, resolve(key));
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        rename(resolve(sourceKey), resolve(targetKey));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public ContentSource read(String key, String eTagValue) throws IOException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            throw new NoSuchFileException(key);
+        }
+        return new FileContentSource(path, eTagValue);
+    }
+
+    @Override
+    public BlobInfo stat(String key) throws IOException {
+        Path path = resolve(key);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return attrs.isRegularFile() ? new BlobInfo(key, attrs.size(), attrs.lastModifiedTime().toMillis()) : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public void list(String prefix, Consumer<BlobInfo> visitor) throws IOException {
+        Path dir = resolve(prefix);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    String key = "/" + root.relativize(file).toString().replace('\\', '/');
+                    visitor.accept(new BlobInfo(key, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                log.warn("无法读取文件 path={}: {}", file, exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 启动后清理上次运行遗留的临时文件（包括暂存区中未提交的上传），只处理本次启动之前修改、
+     * 且符合临时文件命名的文件
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverTempFiles() {
+        long start = System.currentTimeMillis();
+        int removed = 0;
+        for (String dir : new String[]{TEMP_DIR, ContentStore.STAGING_DIR}) {
+            try {
+                removed += recoverTempFiles(resolve(dir));
+            } catch (IOException e) {
+                log.warn("遗留临时文件清理失败 dir={}: {}", dir, e.getMessage());
+            }
+        }
+        log.info("遗留临时文件清理完成 removed={} durability={} 耗时={}ms", removed, durability,
+                System.currentTimeMillis() - start);
+    }
+
+    private int recoverTempFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (!TEMP_NAME.matcher(file.getFileName().toString()).matches()) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attrs.isRegularFile() && attrs.lastModifiedTime().toMillis() < startedAt) {
+                        Files.deleteIfExists(file);
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    log.warn("删除遗留临时文件失败 path={}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void rename(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target.getParent());
+    }
+
+    private void force(FileChannel channel) throws IOException {
+        switch (durability) {
+            case FDATASYNC -> channel.force(false);
+            case FSYNC -> channel.force(true);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 刷写目录项，使重命名在掉电后仍然有效
+     */
+    private void syncDirectory(Path dir) {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // 部分平台（如 Windows）不支持对目录调用 fsync
+            log.debug("目录刷写失败 dir={}: {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * 将 key 解析为 upload-dir 下的路径，拒绝越出根目录的 key
+     */
+    private Path resolve(String key) throws IOException {
+        Path path = root.resolve(key.startsWith("/") ? key.substring(1) : key).normalize();
+        if (!path.startsWith(root)) {
+            throw new NoSuchFileException(key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 16:31:05
+ * @description OrphanFileScanner - 扫描云盘目录，清理数据库中没有记录的物理文件
+ */
+package com.tiqs.storage;
+
+import com.tiqs.entity.CloudBlob;
+import com.tiqs.mapper.CloudBlobMapper;
+import com.tiqs.mapper.CloudFileMapper;
+import com.tiqs.mapper.CloudFileTombstoneMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * 遍历存储中 /cloud/ 下的对象，既不被 cloud_blobs 也不被 cloud_files 引用的文件登记为待清理，
+ * 由 {@link BlobSweeper} 删除（删除前会再次确认引用）。
+ * 最近修改的文件可能属于尚未提交的上传，跳过不处理；超过宽限期仍留在暂存区的内容属于中断的上传，一并清理。
+ */
+@Slf4j
+@Component
+public class OrphanFileScanner {
+
+    private static final String CLOUD_PREFIX = "/cloud/";
+    private static final String SESSIONS_PREFIX = "/cloud/.sessions/";
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final BlobStore blobStore;
+    private final ContentStore contentStore;
+    private final CloudBlobMapper cloudBlobMapper;
+    private final CloudFileMapper cloudFileMapper;
+    private final CloudFileTombstoneMapper tombstoneMapper;
+
+    @Value("${cloud.gc.orphan-grace-hours:24}")
+    private long graceHours;
+
+    public OrphanFileScanner(BlobStore blobStore, ContentStore contentStore, CloudBlobMapper cloudBlobMapper,
+                             CloudFileMapper cloudFileMapper, CloudFileTombstoneMapper tombstoneMapper) {
+        this.blobStore = blobStore;
+        this.contentStore = contentStore;
+        this.cloudBlobMapper = cloudBlobMapper;
+        this.cloudFileMapper = cloudFileMapper;
+        this.tombstoneMapper = tombstoneMapper;
+    }
+
+    @Scheduled(fixedDelayString = "${cloud.gc.orphan-scan-interval-ms:86400000}",
+            initialDelayString = "${cloud.gc.orphan-scan-initial-delay-ms:1800000}")
+    public void scan() {
+        long cutoff = System.currentTimeMillis() - Duration.ofHours(graceHours).toMillis();
+        int[] counts = new int[2];
+        try {
+            blobStore.list(CLOUD_PREFIX, blob -> {
+                // 上传会话由 UploadSessionStore 自行清理
+                if (blob.key().startsWith(SESSIONS_PREFIX) || blob.lastModified() > cutoff) {
+                    return;
+                }
+                counts[0]++;
+                String filePath = blob.key();
+                if (isOrphan(filePath.substring(filePath.lastIndexOf('/') + 1), filePath)) {
+                    tombstoneMapper.insert(filePath, null);
+                    counts[1]++;
+                    log.info("发现孤儿文件，登记待清理 path={}", filePath);
+                }
+            });
+        } catch (Exception e) {
+            log.error("孤儿文件扫描失败 scanned={} orphans={}", counts[0], counts[1], e);
+            return;
+        }
+        log.info("孤儿文件扫描完成 scanned={} orphans={}", counts[0], counts[1]);
+    }
+
+    private boolean isOrphan(String fileName, String filePath) {
+        String sourcePath = ThumbnailGenerator.sourcePathOf(filePath);
+        if (sourcePath != null) {
+            // 缩略图和失败标记随物理文件一起清理，物理文件已不存在时才视为孤儿
+            try {
+                return !contentStore.exists(sourcePath) && tombstoneMapper.countByFilePath(filePath) == 0;
+            } catch (IOException e) {
+                log.warn("无法读取物理文件状态 path={}: {}", sourcePath, e.getMessage());
+                return false;
+            }
+        }
+        if (CONTENT_HASH.matcher(fileName).matches()) {
+            CloudBlob blob = cloudBlobMapper.findByHash(fileName);
+            if (blob != null && filePath.equals(blob.getFilePath())) {
+                return false;
+            }
+        }
+        return cloudFileMapper.countByFilePath(filePath) == 0
+                && tombstoneMapper.countByFilePath(filePath) == 0;
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 09:12:40
+ * @description RangeDownloadWriter - 流式下载输出，支持 Range / If-Range / 206 / multipart/byteranges
+ */
+package com.tiqs.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@Component
+public class RangeDownloadWriter {
+
+    private static final String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=";
+
+    /**
+     * 将内容写出到响应。整个过程只占用固定大小的缓冲区，与文件大小无关。
+     *
+     * @param request  当前请求，用于读取 Range / If-Range / 条件请求头
+     * @param response 当前响应
+     * @param content  下载内容
+     * @param fileName 下载文件名（用于 Content-Disposition）
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response,
+                      ContentSource content, String fileName) throws IOException {
+        write(request, response, content, fileName, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    /**
+     * @param fileName    下载文件名，为空时不设置 Content-Disposition（浏览器内联显示）
+     * @param contentType 内容类型
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response,
+                      ContentSource content, String fileName, String contentType) throws IOException {
+        long length = content.length();
+        String eTag = content.eTag();
+        long lastModified = content.lastModified();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (fileName != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, attachment(fileName));
+        }
+
+        // If-None-Match / If-Modified-Since / If-Match / If-Unmodified-Since，命中时已写好 304 或 412
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+
+        List<HttpRange> ranges = resolveRanges(request, eTag, lastModified);
+        boolean headOnly = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges.isEmpty()) {
+            writeFull(response, content, contentType, headOnly);
+            return;
+        }
+
+        List<long[]> regions = toRegions(ranges, length);
+        if (regions.isEmpty()) {
+            log.debug("无法满足的Range请求 range={} length={}", request.getHeader(HttpHeaders.RANGE), length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+        if (ranges.size() > 1 && covered(regions) >= length) {
+            // 多个区间合并后覆盖整个文件，按规范忽略 Range 返回完整内容
+            writeFull(response, content, contentType, headOnly);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (regions.size() == 1) {
+            long start = regions.get(0)[0];
+            long end = regions.get(0)[1];
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            response.setContentLengthLong(end - start + 1);
+            if (!headOnly) {
+                content.transferTo(start, end - start + 1, response.getOutputStream());
+            }
+            return;
+        }
+
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (long[] region : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(region[0], region[1], length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + (region[1] - region[0] + 1);
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType(MULTIPART_BYTERANGES + boundary);
+        response.setContentLengthLong(contentLength);
+        if (headOnly) {
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < regions.size(); i++) {
+            long[] region = regions.get(i);
+            out.write(partHeaders.get(i));
+            content.transferTo(region[0], region[1] - region[0] + 1, out);
+        }
+        out.write(closing);
+    }
+
+    private void writeFull(HttpServletResponse response, ContentSource content, String contentType,
+                           boolean headOnly) throws IOException {
+        long length = content.length();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(contentType);
+        response.setContentLengthLong(length);
+        if (!headOnly && length > 0) {
+            content.transferTo(0, length, response.getOutputStream());
+        }
+    }
+
+    /**
+     * 构造附件形式的 Content-Disposition，兼容不支持 filename* 的客户端
+     */
+    public static String attachment(String fileName) {
+        String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8);
+        return "attachment; filename=\"" + encodedFileName + "\"; filename*=UTF-8''" + encodedFileName;
+    }
+
+    /**
+     * 解析 Range 头；If-Range 不匹配时按完整内容返回
+     */
+    private List<HttpRange> resolveRanges(HttpServletRequest request, String eTag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (!StringUtils.hasText(rangeHeader)) {
+            return List.of();
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (StringUtils.hasText(ifRange) && !ifRangeMatches(request, ifRange, eTag, lastModified)) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // 格式错误的 Range 头按规范忽略
+            log.debug("忽略无效的Range头 range={}", rangeHeader);
+            return List.of();
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String ifRange, String eTag, long lastModified) {
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // If-Range 只允许强校验
+            return eTag != null && value.equals(eTag);
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date >= 0 && lastModified / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 转换为闭区间 [start, end]，忽略无法满足的区间，并按起点排序合并重叠或相邻的区间。
+     * 返回空列表表示所有区间都无法满足
+     */
+    private List<long[]> toRegions(List<HttpRange> ranges, long length) {
+        List<long[]> satisfiable = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (start <= end) {
+                satisfiable.add(new long[]{start, end});
+            }
+        }
+        satisfiable.sort(Comparator.comparingLong(region -> region[0]));
+
+        List<long[]> regions = new ArrayList<>(satisfiable.size());
+        for (long[] region : satisfiable) {
+            long[] last = regions.isEmpty() ? null : regions.get(regions.size() - 1);
+            if (last != null && region[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], region[1]);
+            } else {
+                regions.add(region);
+            }
+        }
+        return regions;
+    }
+
+    private static long covered(List<long[]> regions) {
+        long total = 0;
+        for (long[] region : regions) {
+            total += region[1] - region[0] + 1;
+        }
+        return total;
+    }
+
+    private String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 19:05:48
+ * @description S3BlobStore - S3 兼容对象存储（AWS S3 / MinIO 等）
+ */
+package com.tiqs.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * key 去掉开头的 "/" 作为对象名。上传直接以流的形式发送，下载按区间发起 Range GET 并边收边写，
+ * 都不经过本地磁盘。长度未知的流按固定大小分段，使用分段上传（Multipart Upload）逐段发送，
+ * 每个上传只占用一段大小的内存；不足一段的内容直接用一次 PutObject。存储内移动使用服务端复制后删除源对象。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cloud.storage.type", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    private static final int HTTP_NOT_FOUND = 404;
+
+    /**
+     * 分段上传的段大小，S3 要求除最后一段外不小于 5MB
+     */
+    private static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private final S3Client client;
+    private final String bucket;
+
+    public S3BlobStore(@Value("${cloud.storage.s3.endpoint:}") String endpoint,
+                       @Value("${cloud.storage.s3.region:us-east-1}") String region,
+                       @Value("${cloud.storage.s3.bucket}") String bucket,
+                       @Value("${cloud.storage.s3.access-key:}") String accessKey,
+                       @Value("${cloud.storage.s3.secret-key:}") String secretKey,
+                       @Value("${cloud.storage.s3.path-style-access:true}") boolean pathStyleAccess) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .forcePathStyle(pathStyleAccess);
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        if (StringUtils.hasText(accessKey)) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+        this.client = builder.build();
+        this.bucket = bucket;
+        log.info("使用S3对象存储 endpoint={} bucket={}", StringUtils.hasText(endpoint) ? endpoint : "aws", bucket);
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length) throws IOException {
+        if (length < 0) {
+            // 单次 PutObject 需要预先知道长度
+            putMultipart(key, in);
+            return;
+        }
+        try {
+            client.putObject(b -> b.bucket(bucket).key(objectKey(key)).contentLength(length),
+                    RequestBody.fromInputStream(in, length));
+        } catch (SdkException e) {
+            throw new IOException("上传对象失败: " + key, e);
+        }
+    }
+
+    /**
+     * 长度未知的流：读满第一段仍未结束时改用分段上传，失败时中止分段上传，不留下未完成的分段
+     */
+    private void putMultipart(String key, InputStream in) throws IOException {
+        byte[] buffer = new byte[PART_SIZE];
+        int read = in.readNBytes(buffer, 0, PART_SIZE);
+        if (read < PART_SIZE) {
+            int size = read;
+            try {
+                client.putObject(b -> b.bucket(bucket).key(objectKey(key)).contentLength((long) size),
+                        RequestBody.fromBytes(Arrays.copyOf(buffer, size)));
+            } catch (SdkException e) {
+                throw new IOException("上传对象失败: " + key, e);
+            }
+            return;
+        }
+
+        String uploadId;
+        try {
+            uploadId = client.createMultipartUpload(b -> b.bucket(bucket).key(objectKey(key))).uploadId();
+        } catch (SdkException e) {
+            throw new IOException("上传对象失败: " + key, e);
+        }
+        List<CompletedPart> parts = new ArrayList<>();
+        try {
+            while (read > 0) {
+                int partNumber = parts.size() + 1;
+                int size = read;
+                String eTag = client.uploadPart(b -> b.bucket(bucket).key(objectKey(key)).uploadId(uploadId)
+                                .partNumber(partNumber).contentLength((long) size),
+                        RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, size), size)).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                read = in.readNBytes(buffer, 0, PART_SIZE);
+            }
+            client.completeMultipartUpload(b -> b.bucket(bucket).key(objectKey(key)).uploadId(uploadId)
+                    .multipartUpload(m -> m.parts(parts)));
+        } catch (SdkException | IOException e) {
+            abortMultipart(key, uploadId);
+            throw e instanceof IOException io ? io : new IOException("上传对象失败: " + key, e);
+        }
+    }
+
+    private void abortMultipart(String key, String uploadId) {
+        try {
+            client.abortMultipartUpload(b -> b.bucket(bucket).key(objectKey(key)).uploadId(uploadId));
+        } catch (SdkException e) {
+            log.warn("中止分段上传失败 key={} uploadId={}: {}", key, uploadId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void importFile(String key, Path source) throws IOException {
+        try {
+            client.putObject(b -> b.bucket(bucket).key(objectKey(key)), RequestBody.fromFile(source));
+        } catch (SdkException e) {
+            throw new IOException("上传对象失败: " + key, e);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        try {
+            client.copyObject(b -> b.sourceBucket(bucket).sourceKey(objectKey(sourceKey))
+                    .destinationBucket(bucket).destinationKey(objectKey(targetKey)));
+            client.deleteObject(b -> b.bucket(bucket).key(objectKey(sourceKey)));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(sourceKey);
+        } catch (SdkException e) {
+            throw new IOException("移动对象失败: " + sourceKey + " -> " + targetKey, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return client.getObject(b -> b.bucket(bucket).key(objectKey(key)));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("读取对象失败: " + key, e);
+        }
+    }
+
+    @Override
+    public ContentSource read(String key, String eTagValue) throws IOException {
+        BlobInfo info = stat(key);
+        if (info == null) {
+            throw new NoSuchFileException(key);
+        }
+        return new S3ContentSource(key, info, eTagValue);
+    }
+
+    @Override
+    public BlobInfo stat(String key) throws IOException {
+        try {
+            HeadObjectResponse head = client.headObject(b -> b.bucket(bucket).key(objectKey(key)));
+            return new BlobInfo(key, head.contentLength(), head.lastModified().toEpochMilli());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            // HEAD 请求没有响应体，对象不存在时只能通过状态码判断
+            if (e.statusCode() == HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw new IOException("读取对象元数据失败: " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("读取对象元数据失败: " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(b -> b.bucket(bucket).key(objectKey(key)));
+        } catch (SdkException e) {
+            throw new IOException("删除对象失败: " + key, e);
+        }
+    }
+
+    @Override
+    public void list(String prefix, Consumer<BlobInfo> visitor) throws IOException {
+        try {
+            for (S3Object object : client.listObjectsV2Paginator(b -> b.bucket(bucket).prefix(objectKey(prefix))).contents()) {
+                visitor.accept(new BlobInfo("/" + object.key(), object.size(), object.lastModified().toEpochMilli()));
+            }
+        } catch (SdkException e) {
+            throw new IOException("遍历对象失败: " + prefix, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+
+    private static String objectKey(String key) {
+        return key.startsWith("/") ? key.substring(1) : key;
+    }
+
+    /**
+     * 每次输出发起一次 Range GET，多区间请求对应多次 GET
+     */
+    private class S3ContentSource implements ContentSource {
+
+        private final String key;
+        private final BlobInfo info;
+        private final String eTagValue;
+
+        private S3ContentSource(String key, BlobInfo info, String eTagValue) {
+            this.key = key;
+            this.info = info;
+            this.eTagValue = eTagValue;
+        }
+
+        @Override
+        public long length() {
+            return info.length();
+        }
+
+        @Override
+        public long lastModified() {
+            return info.lastModified();
+        }
+
+        @Override
+        public String eTag() {
+            if (eTagValue != null) {
+                return "\"" + eTagValue + "\"";
+            }
+            return "\"" + Long.toHexString(info.length()) + "-" + Long.toHexString(info.lastModified()) + "\"";
+        }
+
+        @Override
+        public void transferTo(long position, long count, OutputStream out) throws IOException {
+            if (count <= 0) {
+                return;
+            }
+            String range = "bytes=" + position + "-" + (position + count - 1);
+            try (ResponseInputStream<GetObjectResponse> in = client.getObject(b -> b.bucket(bucket).key(objectKey(key)).range(range))) {
+                long copied = in.transferTo(out);
+                if (copied < count) {
+                    throw new IOException("文件读取不完整: " + key);
+                }
+            } catch (NoSuchKeyException e) {
+                throw new NoSuchFileException(key);
+            } catch (SdkException e) {
+                throw new IOException("读取对象失败: " + key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 21:06:42
+ * @description StagingExecutor - 批量上传时在有界 I/O 线程池中并发写入暂存区
+ */
+package com.tiqs.storage;
+
+import com.tiqs.storage.ContentStore.StagedContent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池与队列都有界，所有请求共用；队列满时由提交请求的线程自己写入，
+ * 并发批量上传不会无限堆积写盘任务。
+ */
+@Component
+public class StagingExecutor {
+
+    @FunctionalInterface
+    public interface StreamSource {
+        InputStream open() throws IOException;
+    }
+
+    private final ContentStore contentStore;
+    private final ThreadPoolExecutor executor;
+
+    public StagingExecutor(ContentStore contentStore,
+                           @Value("${cloud.upload.batch-workers:4}") int workers) {
+        this.contentStore = contentStore;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * 2), runnable -> {
+            Thread thread = new Thread(runnable, "upload-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 异步写入暂存区，失败时 future 以 {@link UncheckedIOException} 结束
+     */
+    public CompletableFuture<StagedContent> stage(StreamSource source, long length) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = source.open()) {
+                return contentStore.stage(in, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 23:52:08
+ * @description StorageScrubber - 后台限速重算云盘文件哈希，发现缺失或损坏的文件
+ */
+package com.tiqs.storage;
+
+import com.tiqs.entity.CloudFile;
+import com.tiqs.entity.CloudScrubReport;
+import com.tiqs.entity.CloudScrubState;
+import com.tiqs.mapper.CloudFileMapper;
+import com.tiqs.mapper.CloudScrubMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 按 cloud_files.id 顺序分批校验，游标持久化在 cloud_scrub_state，重启后从上次的位置继续，
+ * 走到末尾后开始新的一轮。读取速度受令牌桶限制，不与正常下载争抢磁盘带宽。
+ * <p>
+ * 发现的问题写入 cloud_scrub_reports（同一文件同类问题只保留一条），之后校验通过时清除。
+ * 同一批中内容相同的文件只读取一次；没有内容哈希的历史文件只检查是否存在。
+ * <p>
+ * 多节点部署时通过 cloud_scrub_state 上的租约（locked_by / locked_until）保证同一时间只有一个节点巡检：
+ * 每批保存游标时续租，租约被其他节点接管后停止本次运行；节点宕机时租约到期后由其他节点继续。
+ */
+@Slf4j
+@Component
+public class StorageScrubber {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 巡检进度
+     *
+     * @param maxFileId     当前最大文件 id，与 lastFileId 对比可估算本轮进度
+     * @param lockedUntil   当前运行节点的租约到期时间，没有节点在巡检时为 null
+     * @param missingFiles  查询教师所管理班级中未处理的缺失文件报告数
+     * @param corruptFiles  查询教师所管理班级中未处理的内容不一致报告数
+     */
+    public record ScrubProgress(boolean enabled, long bytesPerSecond, Long lastFileId, Long maxFileId, Integer passCount,
+                                LocalDateTime passStartedAt, Long filesChecked, Long bytesChecked,
+                                LocalDateTime lockedUntil, long missingFiles, long corruptFiles) {
+    }
+
+    /**
+     * 本节点的租约标识
+     */
+    private final String owner = UUID.randomUUID().toString();
+
+    private final ContentStore contentStore;
+    private final CloudFileMapper cloudFileMapper;
+    private final CloudScrubMapper scrubMapper;
+    private final TokenBucket bucket;
+    private final long bytesPerSecond;
+
+    @Value("${cloud.scrub.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cloud.scrub.batch-size:100}")
+    private int batchSize;
+
+    @Value("${cloud.scrub.max-run-ms:50000}")
+    private long maxRunMillis;
+
+    /**
+     * 每次续租的时长，需大于一批文件的校验时间
+     */
+    @Value("${cloud.scrub.lease-seconds:600}")
+    private long leaseSeconds;
+
+    public StorageScrubber(ContentStore contentStore, CloudFileMapper cloudFileMapper, CloudScrubMapper scrubMapper,
+                           @Value("${cloud.scrub.max-mb-per-second:10}") double maxMbPerSecond) {
+        this.contentStore = contentStore;
+        this.cloudFileMapper = cloudFileMapper;
+        this.scrubMapper = scrubMapper;
+        this.bytesPerSecond = (long) (maxMbPerSecond * 1024 * 1024);
+        this.bucket = new TokenBucket(bytesPerSecond);
+    }
+
+    /**
+     * 每次运行最多持续 max-run-ms，批次之间保存游标并续租。其他节点持有租约时跳过本次运行
+     */
+    @Scheduled(fixedDelayString = "${cloud.scrub.interval-ms:60000}",
+            initialDelayString = "${cloud.scrub.initial-delay-ms:300000}")
+    public void scrub() {
+        if (!enabled) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + maxRunMillis;
+        try {
+            loadState();
+            if (scrubMapper.acquireLease(owner, leaseSeconds) == 0) {
+                log.debug("其他节点正在巡检，跳过本次运行");
+                return;
+            }
+            // 取得租约后再读取游标，接上之前持有者保存的进度
+            CloudScrubState state = scrubMapper.findState();
+            try {
+                scrubUntil(state, deadline);
+            } finally {
+                scrubMapper.releaseLease(owner);
+            }
+        } catch (Exception e) {
+            log.warn("存储巡检失败: {}", e.getMessage());
+        }
+    }
+
+    private void scrubUntil(CloudScrubState state, long deadline) {
+        long lastFileId = state.getLastFileId();
+        while (System.currentTimeMillis() < deadline) {
+            List<CloudFile> batch = cloudFileMapper.findScrubBatch(lastFileId, batchSize);
+            if (batch.isEmpty()) {
+                scrubMapper.startPass(owner);
+                log.info("存储巡检完成一轮 pass={} files={} bytes={}", state.getPassCount() + 1,
+                        state.getFilesChecked(), state.getBytesChecked());
+                return;
+            }
+            long bytes = verifyBatch(batch);
+            lastFileId = batch.get(batch.size() - 1).getId();
+            if (scrubMapper.saveProgress(owner, lastFileId, batch.size(), bytes, leaseSeconds) == 0) {
+                log.warn("巡检租约已被其他节点接管，停止本次运行 lastFileId={}", lastFileId);
+                return;
+            }
+            state.setFilesChecked(state.getFilesChecked() + batch.size());
+            state.setBytesChecked(state.getBytesChecked() + bytes);
+        }
+    }
+
+    /**
+     * @param teacherId 报告数只统计该教师所管理班级中的文件
+     */
+    public ScrubProgress progress(Long teacherId) {
+        CloudScrubState state = loadState();
+        LocalDateTime lockedUntil = state.getLockedUntil() != null && state.getLockedUntil().isAfter(LocalDateTime.now())
+                ? state.getLockedUntil() : null;
+        return new ScrubProgress(enabled, bytesPerSecond, state.getLastFileId(), cloudFileMapper.findMaxId(),
+                state.getPassCount(), state.getPassStartedAt(), state.getFilesChecked(), state.getBytesChecked(),
+                lockedUntil, scrubMapper.countReports(teacherId, CloudScrubReport.MISSING),
+                scrubMapper.countReports(teacherId, CloudScrubReport.MISMATCH));
+    }
+
+    /**
+     * 该教师所管理班级中的报告
+     */
+    public List<CloudScrubReport> recentReports(Long teacherId, int limit) {
+        return scrubMapper.findRecentReports(teacherId, limit);
+    }
+
+    private CloudScrubState loadState() {
+        CloudScrubState state = scrubMapper.findState();
+        if (state == null) {
+            scrubMapper.initState();
+            state = scrubMapper.findState();
+        }
+        return state;
+    }
+
+    /**
+     * @return 本批读取的字节数
+     */
+    private long verifyBatch(List<CloudFile> batch) {
+        // 内容哈希 -> 实际哈希，缺失时为 null
+        Map<String, String> verified = new HashMap<>();
+        List<Long> healthy = new ArrayList<>();
+        long bytes = 0;
+        for (CloudFile file : batch) {
+            String expected = file.getContentHash();
+            String problem = null;
+            String actual = null;
+            try {
+                if (expected == null) {
+                    problem = contentStore.exists(file.getFilePath()) ? null : CloudScrubReport.MISSING;
+                } else {
+                    if (!verified.containsKey(expected)) {
+                        String hash = hash(file.getFilePath());
+                        verified.put(expected, hash);
+                        if (hash != null && file.getFileSize() != null) {
+                            bytes += file.getFileSize();
+                        }
+                    }
+                    actual = verified.get(expected);
+                    if (actual == null) {
+                        problem = CloudScrubReport.MISSING;
+                    } else if (!actual.equals(expected)) {
+                        problem = CloudScrubReport.MISMATCH;
+                    }
+                }
+            } catch (IOException e) {
+                // 读取出错（如坏道）不确定是否损坏，留待下一轮
+                log.warn("巡检读取文件失败 id={} path={}: {}", file.getId(), file.getFilePath(), e.getMessage());
+                continue;
+            }
+
+            if (problem == null) {
+                healthy.add(file.getId());
+            } else if (cloudFileMapper.findById(file.getId()) != null) {
+                // 校验期间被删除的文件不算问题
+                log.warn("巡检发现问题 id={} path={} problem={} expected={} actual={}", file.getId(), file.getFilePath(),
+                        problem, expected, actual);
+                scrubMapper.upsertReport(new CloudScrubReport(null, file.getId(), file.getClassId(), file.getFilePath(),
+                        expected, actual, problem, null, null));
+            }
+        }
+        if (!healthy.isEmpty()) {
+            scrubMapper.deleteReportsByFileIds(healthy);
+        }
+        return bytes;
+    }
+
+    /**
+     * 限速读取并计算 SHA-256，文件缺失时返回 null
+     */
+    private String hash(String filePath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = contentStore.openStream(filePath)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bucket.acquire(read);
+                digest.update(buffer, 0, read);
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 17:40:26
+ * @description StorageTieringJob - 闲置文件压缩转入冷存储，重新变热的文件提升回热存储
+ */
+package com.tiqs.storage;
+
+import com.tiqs.entity.CloudBlob;
+import com.tiqs.mapper.CloudBlobMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 所有引用都超过 cold-after-days 未被下载或修改、累计下载次数较少、且属于文本 / 源码 / 旧版 Office 等
+ * 可压缩类型的物理文件会被 gzip 压缩后转入冷存储。docx / xlsx / pdf 等本身已压缩的格式不参与分层。
+ * 压缩节省不足 {@link #MIN_SAVINGS} 的文件标记为不可压缩，之后不再尝试。
+ * <p>
+ * 冷存储中的文件在一个提升周期内被读取 promote-after-reads 次以上时解压回热存储。
+ * 文件移动与层级标记在 cloud_blobs 行锁下进行，旧副本在标记提交后才删除，读取方始终能找到其中一份。
+ * <p>
+ * 冷存储目录是节点本地目录，只在使用本地存储时启用；使用 S3 时应改用存储桶的生命周期规则转换存储类别。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cloud.storage.type", havingValue = "local", matchIfMissing = true)
+public class StorageTieringJob {
+
+    private static final int BATCH_SIZE = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_TIER_SIZE = 64 * 1024;
+    private static final double MIN_SAVINGS = 0.2;
+
+    static final Set<String> COMPRESSIBLE_FILE_TYPES = Set.of(
+            "txt", "csv", "tsv", "md", "log", "json", "xml", "yaml", "yml", "html", "htm", "css", "svg", "sql", "rtf",
+            "java", "py", "c", "h", "cpp", "hpp", "cs", "go", "rs", "kt", "js", "ts", "sh", "ipynb",
+            "doc", "xls", "ppt"
+    );
+
+    private final ContentStore contentStore;
+    private final BlobStore blobStore;
+    private final CloudBlobMapper cloudBlobMapper;
+
+    @Value("${cloud.tier.cold-after-days:30}")
+    private int coldAfterDays;
+
+    @Value("${cloud.tier.max-downloads:20}")
+    private int maxDownloads;
+
+    @Value("${cloud.tier.promote-after-reads:3}")
+    private long promoteAfterReads;
+
+    public StorageTieringJob(ContentStore contentStore, BlobStore blobStore, CloudBlobMapper cloudBlobMapper) {
+        this.contentStore = contentStore;
+        this.blobStore = blobStore;
+        this.cloudBlobMapper = cloudBlobMapper;
+    }
+
+    @Scheduled(fixedDelayString = "${cloud.tier.demote-interval-ms:3600000}",
+            initialDelayString = "${cloud.tier.initial-delay-ms:600000}")
+    public void demoteIdleBlobs() {
+        LocalDateTime idleBefore = LocalDateTime.now().minusDays(coldAfterDays);
+        int moved = 0;
+        int skipped = 0;
+        long savedBytes = 0;
+        try {
+            String after = "";
+            List<CloudBlob> candidates;
+            do {
+                candidates = cloudBlobMapper.findColdCandidates(after, idleBefore, maxDownloads, MIN_TIER_SIZE,
+                        COMPRESSIBLE_FILE_TYPES, BATCH_SIZE);
+                for (CloudBlob blob : candidates) {
+                    after = blob.getContentHash();
+                    try {
+                        long saved = demote(blob);
+                        if (saved > 0) {
+                            moved++;
+                            savedBytes += saved;
+                        } else {
+                            skipped++;
+                        }
+                    } catch (IOException e) {
+                        log.warn("转入冷存储失败 hash={} path={}: {}", blob.getContentHash(), blob.getFilePath(), e.getMessage());
+                    }
+                }
+            } while (candidates.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("冷存储分层任务失败，下次重试 moved={}", moved, e);
+            return;
+        }
+        if (moved > 0 || skipped > 0) {
+            log.info("冷存储分层完成 moved={} skipped={} savedBytes={}", moved, skipped, savedBytes);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cloud.tier.promote-interval-ms:3600000}",
+            initialDelayString = "${cloud.tier.initial-delay-ms:600000}")
+    public void promoteHotBlobs() {
+        Map<String, Long> reads = contentStore.drainColdReads();
+        int promoted = 0;
+        for (Map.Entry<String, Long> entry : reads.entrySet()) {
+            if (entry.getValue() < promoteAfterReads) {
+                continue;
+            }
+            try {
+                if (promote(entry.getKey())) {
+                    promoted++;
+                }
+            } catch (Exception e) {
+                log.warn("提升回热存储失败 hash={}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        if (promoted > 0) {
+            log.info("冷存储文件提升完成 promoted={} coldReads={}", promoted, reads.size());
+        }
+    }
+
+    /**
+     * @return 节省的字节数，未转入冷存储时返回 0
+     */
+    private long demote(CloudBlob blob) throws IOException {
+        BlobStore.BlobInfo hot = blobStore.stat(blob.getFilePath());
+        if (hot == null) {
+            return 0;
+        }
+        Path cold = contentStore.resolveCold(blob.getFilePath());
+        Files.createDirectories(cold.getParent());
+        Path temp = cold.resolveSibling(cold.getFileName() + ".tmp");
+        try (InputStream in = blobStore.open(blob.getFilePath());
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        long original = hot.length();
+        long compressed = Files.size(temp);
+        if (compressed > original * (1 - MIN_SAVINGS)) {
+            Files.deleteIfExists(temp);
+            cloudBlobMapper.updateTier(blob.getContentHash(), ContentStore.TIER_HOT, ContentStore.TIER_INCOMPRESSIBLE);
+            log.debug("压缩收益不足，保留在热存储 hash={} original={} compressed={}", blob.getContentHash(), original, compressed);
+            return 0;
+        }
+        if (!contentStore.moveToCold(blob.getContentHash(), temp)) {
+            return 0;
+        }
+        blobStore.delete(blob.getFilePath());
+        log.debug("已转入冷存储 hash={} original={} compressed={}", blob.getContentHash(), original, compressed);
+        return original - compressed;
+    }
+
+    private boolean promote(String contentHash) throws IOException {
+        CloudBlob blob = cloudBlobMapper.findByHash(contentHash);
+        if (blob == null || !ContentStore.TIER_COLD.equals(blob.getStorageTier())) {
+            return false;
+        }
+        Path cold = contentStore.resolveCold(blob.getFilePath());
+        ContentStore.StagedContent restored;
+        try (InputStream in = GzipContentSource.open(cold)) {
+            // 重新暂存时校验哈希，损坏的冷存储副本不会覆盖热存储
+            restored = contentStore.stage(in, blob.getFileSize());
+        }
+        if (!contentStore.moveToHot(contentHash, restored)) {
+            return false;
+        }
+        Files.deleteIfExists(cold);
+        log.info("冷存储文件重新变热，已提升回热存储 hash={} path={}", contentHash, blob.getFilePath());
+        return true;
+    }
+}
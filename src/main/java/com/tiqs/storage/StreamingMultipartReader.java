@@ -0,0 +1,95 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 22:31:06
+ * @description StreamingMultipartReader - 直接从请求体顺序读取 multipart，文件部分不经过容器落盘
+ */
+package com.tiqs.storage;
+
+import com.tiqs.common.BusinessException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadException;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 需要 {@code spring.servlet.multipart.resolve-lazily=true}，并且处理方法不能读取请求参数
+ * （Tomcat 读取参数时会先把整个 multipart 请求体解析落盘）。
+ * 普通字段须位于文件之前，按出现顺序读取；遇到第一个文件部分即返回，由调用方边读边写入存储。
+ */
+public final class StreamingMultipartReader {
+
+    /**
+     * 单个普通字段的最大长度
+     */
+    private static final int MAX_FIELD_BYTES = 8192;
+
+    /**
+     * 除文件外请求体的额外开销（字段、分隔符、部分头）
+     */
+    private static final long REQUEST_OVERHEAD_BYTES = 64 * 1024;
+
+    private StreamingMultipartReader() {
+    }
+
+    /**
+     * @param fields  文件之前的普通字段
+     * @param content 文件内容，只能在请求处理线程中顺序读取一次
+     */
+    public record FilePart(String fileName, Map<String, String> fields, InputStream content) {
+    }
+
+    /**
+     * 读取到第一个文件部分为止
+     *
+     * @param maxFileBytes 文件大小上限；请求声明的 Content-Length 超过上限时不读取请求体直接拒绝
+     */
+    public static FilePart readFile(HttpServletRequest request, long maxFileBytes) throws IOException {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw BusinessException.of(400, "请求格式必须为 multipart/form-data");
+        }
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        upload.setSizeMax(maxFileBytes + REQUEST_OVERHEAD_BYTES);
+        upload.setHeaderCharset(StandardCharsets.UTF_8);
+
+        Map<String, String> fields = new HashMap<>();
+        try {
+            FileItemInputIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (item.isFormField()) {
+                    try (InputStream in = item.getInputStream()) {
+                        fields.put(item.getFieldName(), new String(in.readNBytes(MAX_FIELD_BYTES), StandardCharsets.UTF_8));
+                    }
+                    continue;
+                }
+                return new FilePart(fileName(upload.getFileName(item.getHeaders())), fields, item.getInputStream());
+            }
+        } catch (FileUploadSizeException e) {
+            throw BusinessException.of(413, "文件大小超出限制，最大支持" + maxFileBytes / (1024 * 1024) + "MB");
+        } catch (FileUploadException e) {
+            throw BusinessException.of(400, "上传请求格式错误");
+        }
+        throw BusinessException.of(400, "请选择要上传的文件");
+    }
+
+    /**
+     * 去掉部分浏览器附带的客户端路径。不使用 FileItemInput#getName，它按平台文件系统编码校验文件名，
+     * 非 UTF-8 环境下中文文件名会被拒绝
+     */
+    private static String fileName(String name) {
+        if (name == null || name.indexOf('\0') >= 0) {
+            return null;
+        }
+        return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+    }
+}
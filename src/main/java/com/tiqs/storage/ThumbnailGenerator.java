@@ -0,0 +1,294 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 18:37:25
+ * @description ThumbnailGenerator - 上传后在有界线程池中异步生成图片 / PDF 缩略图
+ */
+package com.tiqs.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缩略图保存在物理文件旁（key 为 {@code <物理文件>.thumb.jpg}），相同内容的文件共用一份。
+ * 源文件通过 {@link ContentStore#openStream} 读取，已转入冷存储的文件同样可以生成。
+ * 任务队列有界，队列满时丢弃任务，缩略图在下次请求时重新排队生成，不影响上传请求本身。
+ * <p>
+ * 源文件过大或无法解码时在旁边写入空的 {@code <物理文件>.thumb.failed} 标记，之后的请求直接返回不可预览，
+ * 不再反复排队。内存不足和源文件缺失不写标记，下次请求时重试。
+ */
+@Slf4j
+@Component
+public class ThumbnailGenerator {
+
+    public static final String THUMBNAIL_SUFFIX = ".thumb.jpg";
+    public static final String FAILED_SUFFIX = ".thumb.failed";
+
+    private static final Set<String> IMAGE_TYPES = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+    private static final String PDF_TYPE = "pdf";
+
+    /**
+     * 超过该像素数的图片不解码，防止超大图片耗尽内存
+     */
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+
+    private final ContentStore contentStore;
+    private final BlobStore blobStore;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @Value("${cloud.thumbnail.max-size:320}")
+    private int maxSize;
+
+    @Value("${cloud.thumbnail.max-source-bytes:52428800}")
+    private long maxSourceBytes;
+
+    public ThumbnailGenerator(ContentStore contentStore, BlobStore blobStore,
+                              @Value("${cloud.thumbnail.workers:2}") int workers,
+                              @Value("${cloud.thumbnail.queue-capacity:200}") int queueCapacity) {
+        this.contentStore = contentStore;
+        this.blobStore = blobStore;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static boolean isSupported(String fileType) {
+        return fileType != null && (IMAGE_TYPES.contains(fileType.toLowerCase()) || PDF_TYPE.equalsIgnoreCase(fileType));
+    }
+
+    /**
+     * 缩略图或失败标记对应的物理文件路径，其他文件返回 null
+     */
+    public static String sourcePathOf(String key) {
+        if (key.endsWith(THUMBNAIL_SUFFIX)) {
+            return key.substring(0, key.length() - THUMBNAIL_SUFFIX.length());
+        }
+        if (key.endsWith(FAILED_SUFFIX)) {
+            return key.substring(0, key.length() - FAILED_SUFFIX.length());
+        }
+        return null;
+    }
+
+    /**
+     * 读取已生成的缩略图
+     *
+     * @throws NoSuchFileException 尚未生成
+     */
+    public ContentSource read(String filePath, String eTagValue) throws IOException {
+        return blobStore.read(filePath + THUMBNAIL_SUFFIX, eTagValue);
+    }
+
+    /**
+     * 是否已确定无法为该物理文件生成缩略图
+     */
+    public boolean hasFailed(String filePath) throws IOException {
+        return blobStore.exists(filePath + FAILED_SUFFIX);
+    }
+
+    /**
+     * 在当前事务提交后排队生成缩略图，没有事务时立即排队
+     *
+     * @param fileSize 原始文件大小，冷存储中的文件无法从存储直接得到
+     */
+    public void scheduleAfterCommit(String filePath, String fileType, Long fileSize) {
+        if (!isSupported(fileType)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule(filePath, fileType, fileSize);
+                }
+            });
+        } else {
+            schedule(filePath, fileType, fileSize);
+        }
+    }
+
+    /**
+     * 排队生成缩略图，已存在、已失败或已在队列中时忽略
+     */
+    public void schedule(String filePath, String fileType, Long fileSize) {
+        if (!isSupported(fileType) || !pending.add(filePath)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(filePath, fileType.toLowerCase(), fileSize);
+                } finally {
+                    pending.remove(filePath);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(filePath);
+            log.warn("缩略图队列已满，跳过 filePath={}", filePath);
+        }
+    }
+
+    private void generate(String filePath, String fileType, Long fileSize) {
+        String target = filePath + THUMBNAIL_SUFFIX;
+        long start = System.currentTimeMillis();
+        try {
+            if (blobStore.exists(target) || hasFailed(filePath)) {
+                return;
+            }
+            if (fileSize != null && fileSize > maxSourceBytes) {
+                markFailed(filePath, "源文件过大 size=" + fileSize);
+                return;
+            }
+            BufferedImage image;
+            try (InputStream in = contentStore.openStream(filePath)) {
+                image = PDF_TYPE.equals(fileType) ? renderFirstPage(in) : readImage(in);
+            }
+            if (image == null) {
+                markFailed(filePath, "无法解码");
+                return;
+            }
+            byte[] jpeg = writeJpeg(scale(image));
+            blobStore.put(target, new ByteArrayInputStream(jpeg), jpeg.length);
+            log.debug("生成缩略图 filePath={} 耗时={}ms", filePath, System.currentTimeMillis() - start);
+        } catch (NoSuchFileException e) {
+            log.debug("物理文件不存在，跳过缩略图 filePath={}", filePath);
+        } catch (OutOfMemoryError e) {
+            log.warn("生成缩略图内存不足，稍后重试 filePath={}", filePath);
+        } catch (Exception e) {
+            log.warn("生成缩略图失败 filePath={}: {}", filePath, e.toString());
+            markFailed(filePath, e.toString());
+        }
+    }
+
+    private void markFailed(String filePath, String reason) {
+        log.info("无法生成缩略图，标记为不可预览 filePath={} reason={}", filePath, reason);
+        try {
+            blobStore.put(filePath + FAILED_SUFFIX, new ByteArrayInputStream(new byte[0]), 0);
+        } catch (IOException e) {
+            log.warn("写入缩略图失败标记失败 filePath={}: {}", filePath, e.getMessage());
+        }
+    }
+
+    private BufferedImage readImage(InputStream source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > MAX_SOURCE_PIXELS) {
+                    log.debug("图片过大，跳过缩略图 pixels={}", pixels);
+                    return null;
+                }
+                // 按目标尺寸隔行采样读取，减少大图解码的内存占用
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longest / (maxSize * 2));
+                var param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage renderFirstPage(InputStream source) throws IOException {
+        // PDF 需要随机访问，读入内存；大小已由 max-source-bytes 限制
+        try (PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(source))) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            float longest = Math.max(box.getWidth(), box.getHeight());
+            float scale = longest > 0 ? maxSize / longest : 1f;
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = Math.min(1.0, (double) maxSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        // JPEG 不支持透明通道，透明部分填充白色
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetWidth, targetHeight);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] writeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.8f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 21:48:13
+ * @description TokenBucket - 按字节计的令牌桶，速率可在运行时调整
+ */
+package com.tiqs.storage;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 桶容量等于一秒的速率。允许预支：令牌不足时先扣成负数，由调用方按返回的时间等待，
+ * 单次请求超过桶容量也不会被饿死，并发调用方按预支顺序依次获得带宽。
+ */
+public class TokenBucket {
+
+    private long ratePerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond 每秒令牌数，不大于 0 表示不限速
+     */
+    public TokenBucket(long ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.tokens = Math.max(0, ratePerSecond);
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized void setRate(long ratePerSecond) {
+        refill();
+        this.ratePerSecond = ratePerSecond;
+        this.tokens = Math.min(tokens, Math.max(0, ratePerSecond));
+    }
+
+    /**
+     * 预支令牌
+     *
+     * @return 调用方需要等待的纳秒数，0 表示无需等待
+     */
+    public synchronized long reserve(long permits) {
+        if (ratePerSecond <= 0) {
+            return 0;
+        }
+        refill();
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    }
+
+    /**
+     * 预支令牌并等待到可用
+     */
+    public void acquire(long permits) throws InterruptedIOException {
+        pause(reserve(permits));
+    }
+
+    static void pause(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("限速等待被中断");
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (ratePerSecond > 0) {
+            tokens = Math.min(ratePerSecond, tokens + (double) (now - lastRefillNanos) * ratePerSecond / TimeUnit.SECONDS.toNanos(1));
+        }
+        lastRefillNanos = now;
+    }
+}
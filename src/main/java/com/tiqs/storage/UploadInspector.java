@@ -0,0 +1,180 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 22:31:06
+ * @description UploadInspector - 流式上传的文件头嗅探与边读边限长
+ */
+package com.tiqs.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 在内容写入存储之前先读取文件头：可执行文件、脚本和可被浏览器当作网页渲染的内容直接拒绝，
+ * 常见图片 / PDF / Office 文档还要求文件头与扩展名一致。之后的内容边读边计数，超过上限立即中止，
+ * 不必等整个请求体传完。
+ */
+public final class UploadInspector {
+
+    /**
+     * 嗅探读取的文件头长度
+     */
+    private static final int HEAD_SIZE = 512;
+
+    private static final byte[] ZIP = {'P', 'K', 3, 4};
+
+    /**
+     * 扩展名对应的文件头，未列出的类型只做危险内容检查
+     */
+    private static final Map<String, byte[]> SIGNATURES = Map.ofEntries(
+            Map.entry("jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+            Map.entry("jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+            Map.entry("png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+            Map.entry("gif", new byte[]{'G', 'I', 'F', '8'}),
+            Map.entry("bmp", new byte[]{'B', 'M'}),
+            Map.entry("zip", ZIP),
+            Map.entry("docx", ZIP),
+            Map.entry("xlsx", ZIP),
+            Map.entry("pptx", ZIP)
+    );
+
+    private static final String[] MARKUP_PREFIXES = {
+            "<!doctype html", "<html", "<head", "<body", "<script", "<iframe", "<svg", "<?xml"
+    };
+
+    private UploadInspector() {
+    }
+
+    /**
+     * 上传内容被拒绝。继承 IOException，存储层按写入失败处理并清理已写入的临时内容
+     */
+    public static class RejectedUploadException extends IOException {
+        private final int code;
+
+        public RejectedUploadException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * 读取并检查文件头，返回从头开始的完整内容流；读取总量超过 maxBytes 时抛出 {@link RejectedUploadException}
+     *
+     * @param extension 小写扩展名，不含点
+     */
+    public static InputStream inspect(InputStream in, String extension, long maxBytes) throws IOException {
+        byte[] head = in.readNBytes(HEAD_SIZE);
+        if (head.length == 0) {
+            throw new RejectedUploadException(400, "文件不能为空");
+        }
+        String dangerous = detectDangerous(head);
+        if (dangerous != null) {
+            throw new RejectedUploadException(400, "不允许上传此类型的文件：" + dangerous);
+        }
+        if (!matchesExtension(head, extension)) {
+            throw new RejectedUploadException(400, "文件内容与扩展名不符");
+        }
+        return new LimitedInputStream(new SequenceInputStream(new ByteArrayInputStream(head), in), maxBytes);
+    }
+
+    /**
+     * @return 危险内容的描述，安全时返回 null
+     */
+    static String detectDangerous(byte[] head) {
+        if (startsWith(head, new byte[]{'M', 'Z'})) {
+            return "Windows 可执行文件";
+        }
+        if (startsWith(head, new byte[]{0x7F, 'E', 'L', 'F'})) {
+            return "ELF 可执行文件";
+        }
+        if (startsWith(head, new byte[]{(byte) 0xFE, (byte) 0xED, (byte) 0xFA})
+                || startsWith(head, new byte[]{(byte) 0xCE, (byte) 0xFA, (byte) 0xED, (byte) 0xFE})
+                || startsWith(head, new byte[]{(byte) 0xCF, (byte) 0xFA, (byte) 0xED, (byte) 0xFE})
+                || startsWith(head, new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE})) {
+            return "Mach-O 可执行文件或 Java 类文件";
+        }
+        if (startsWith(head, new byte[]{'#', '!'})) {
+            return "脚本";
+        }
+        String text = new String(head, StandardCharsets.ISO_8859_1).stripLeading().toLowerCase(Locale.ROOT);
+        if (text.startsWith("\u00ef\u00bb\u00bf")) {
+            text = text.substring(3).stripLeading();
+        }
+        for (String prefix : MARKUP_PREFIXES) {
+            if (text.startsWith(prefix)) {
+                return "网页或标记文档";
+            }
+        }
+        return null;
+    }
+
+    static boolean matchesExtension(byte[] head, String extension) {
+        if ("pdf".equals(extension)) {
+            // 规范允许 %PDF 前存在少量字节
+            return new String(head, StandardCharsets.ISO_8859_1).contains("%PDF-");
+        }
+        byte[] signature = SIGNATURES.get(extension);
+        return signature == null || startsWith(head, signature);
+    }
+
+    private static boolean startsWith(byte[] head, byte[] prefix) {
+        if (head.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (head[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                advance(read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void advance(int read) throws RejectedUploadException {
+            count += read;
+            if (count > maxBytes) {
+                throw new RejectedUploadException(413, "文件大小超出限制，最大支持" + maxBytes / (1024 * 1024) + "MB");
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * @author TIQS
+ * @date Created in 2026-10-18 10:05:31
+ * @description UploadSessionStore - 分片上传会话的暂存区
+ */
+package com.tiqs.storage;
+
+import com.tiqs.common.BusinessException;
+import com.tiqs.dto.CloudUploadSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 每个会话对应暂存区下的一个目录：
+ * <pre>
+ * .sessions/{sessionId}/session.properties  会话元数据
+ * .sessions/{sessionId}/data                按文件总大小预分配的数据文件，各分片直接写入自己的偏移量
+ * .sessions/{sessionId}/chunks/{index}      分片写入完成的标记
+ * </pre>
+ * 提交时直接将 data 移动到最终位置，不需要再拼接一次。
+ * <p>
+ * 会话目录始终位于本节点的 upload-dir 下，使用 S3 存储时也是如此（提交时才上传到对象存储）。
+ * 多节点部署时同一会话的分片必须到达同一节点：负载均衡按 sessionId 保持会话粘滞，或让各节点共享 upload-dir。
+ */
+@Slf4j
+@Component
+public class UploadSessionStore {
+
+    private static final String SESSION_DIR = "/cloud/.sessions";
+    private static final String META_FILE = "session.properties";
+    private static final String DATA_FILE = "data";
+    private static final String CHUNK_DIR = "chunks";
+    private static final Pattern SESSION_ID_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${cloud.upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    public CloudUploadSession create(CloudUploadSession session) {
+        String sessionId = UUID.randomUUID().toString().replace("-", "");
+        LocalDateTime now = LocalDateTime.now();
+        session.setSessionId(sessionId);
+        session.setCreatedAt(now);
+        session.setExpiresAt(now.plusHours(sessionTtlHours));
+        session.setTotalChunks((int) ((session.getFileSize() + session.getChunkSize() - 1) / session.getChunkSize()));
+
+        Path dir = sessionDir(sessionId);
+        try {
+            Files.createDirectories(dir.resolve(CHUNK_DIR));
+            // 预分配为稀疏文件，不产生实际写入
+            try (RandomAccessFile data = new RandomAccessFile(dir.resolve(DATA_FILE).toFile(), "rw")) {
+                data.setLength(session.getFileSize());
+            }
+            writeMeta(dir, session);
+        } catch (IOException e) {
+            log.error("创建上传会话失败 sessionId={}", sessionId, e);
+            deleteQuietly(dir);
+            throw BusinessException.of(500, "创建上传会话失败");
+        }
+        session.setUploadedChunks(new ArrayList<>());
+        return session;
+    }
+
+    public CloudUploadSession get(String sessionId) {
+        Path dir = sessionDir(sessionId);
+        if (!Files.isRegularFile(dir.resolve(META_FILE))) {
+            throw BusinessException.of(404, "上传会话不存在或已过期");
+        }
+        try {
+            CloudUploadSession session = readMeta(dir);
+            session.setUploadedChunks(listChunks(dir));
+            return session;
+        } catch (IOException e) {
+            log.error("读取上传会话失败 sessionId={}", sessionId, e);
+            throw BusinessException.of(500, "读取上传会话失败");
+        }
+    }
+
+    /**
+     * 将分片内容写入数据文件对应偏移量。不同分片写入不重叠的区间，可并发执行。
+     */
+    public void writeChunk(CloudUploadSession session, int index, InputStream in) throws IOException {
+        Path dir = sessionDir(session.getSessionId());
+        long offset = session.chunkOffset(index);
+        long expected = session.chunkLength(index);
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            byte[] array = buffer.array();
+            int read;
+            while ((read = in.read(array)) != -1) {
+                if (written + read > expected) {
+                    throw BusinessException.of(400, "分片大小不正确，期望 " + expected + " 字节");
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+            }
+        }
+        if (written != expected) {
+            throw BusinessException.of(400, "分片大小不正确，期望 " + expected + " 字节，实际 " + written + " 字节");
+        }
+
+        Path marker = dir.resolve(CHUNK_DIR).resolve(String.valueOf(index));
+        if (!Files.exists(marker)) {
+            Files.createFile(marker);
+        }
+    }
+
+    /**
+     * 返回已组装完成的数据文件，调用方负责将其移动到最终位置
+     */
+    public Path dataFile(String sessionId) {
+        return sessionDir(sessionId).resolve(DATA_FILE);
+    }
+
+    public void delete(String sessionId) {
+        deleteQuietly(sessionDir(sessionId));
+    }
+
+    /**
+     * 清理过期的上传会话
+     */
+    @Scheduled(fixedDelayString = "${cloud.upload.session-cleanup-interval-ms:3600000}", initialDelay = 60000)
+    public void cleanupExpiredSessions() {
+        Path root = Paths.get(uploadDir + SESSION_DIR);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int removed = 0;
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(root)) {
+            for (Path dir : sessions) {
+                try {
+                    CloudUploadSession session = readMeta(dir);
+                    if (session.getExpiresAt() == null || session.getExpiresAt().isBefore(now)) {
+                        deleteQuietly(dir);
+                        removed++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // 元数据缺失或损坏的会话目录直接清理
+                    log.warn("清理损坏的上传会话 dir={}", dir);
+                    deleteQuietly(dir);
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("扫描上传会话目录失败", e);
+        }
+        if (removed > 0) {
+            log.info("已清理过期上传会话 count={}", removed);
+        }
+    }
+
+    private Path sessionDir(String sessionId) {
+        if (sessionId == null || !SESSION_ID_PATTERN.matcher(sessionId).matches()) {
+            throw BusinessException.of(400, "无效的上传会话ID");
+        }
+        return Paths.get(uploadDir + SESSION_DIR, sessionId);
+    }
+
+    private List<Integer> listChunks(Path dir) throws IOException {
+        List<Integer> chunks = new ArrayList<>();
+        try (DirectoryStream<Path> markers = Files.newDirectoryStream(dir.resolve(CHUNK_DIR))) {
+            for (Path marker : markers) {
+                chunks.add(Integer.parseInt(marker.getFileName().toString()));
+            }
+        }
+        Collections.sort(chunks);
+        return chunks;
+    }
+
+    private void writeMeta(Path dir, CloudUploadSession session) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("sessionId", session.getSessionId());
+        props.setProperty("classId", String.valueOf(session.getClassId()));
+        props.setProperty("uploaderId", String.valueOf(session.getUploaderId()));
+        if (session.getFolderId() != null) {
+            props.setProperty("folderId", String.valueOf(session.getFolderId()));
+        }
+        props.setProperty("fileName", session.getFileName());
+        props.setProperty("fileSize", String.valueOf(session.getFileSize()));
+        props.setProperty("chunkSize", String.valueOf(session.getChunkSize()));
+        props.setProperty("totalChunks", String.valueOf(session.getTotalChunks()));
+        if (session.getDescription() != null) {
+            props.setProperty("description", session.getDescription());
+        }
+        props.setProperty("isPublic", String.valueOf(session.getIsPublic()));
+        props.setProperty("createdAt", session.getCreatedAt().toString());
+        props.setProperty("expiresAt", session.getExpiresAt().toString());
+        try (Writer writer = Files.newBufferedWriter(dir.resolve(META_FILE), StandardCharsets.UTF_8)) {
+            props.store(writer, null);
+        }
+    }
+
+    private CloudUploadSession readMeta(Path dir) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(dir.resolve(META_FILE), StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        CloudUploadSession session = new CloudUploadSession();
+        session.setSessionId(props.getProperty("sessionId"));
+        session.setClassId(Long.valueOf(props.getProperty("classId")));
+        session.setUploaderId(Long.valueOf(props.getProperty("uploaderId")));
+        String folderId = props.getProperty("folderId");
+        session.setFolderId(folderId != null ? Long.valueOf(folderId) : null);
+        session.setFileName(props.getProperty("fileName"));
+        session.setFileSize(Long.valueOf(props.getProperty("fileSize")));
+        session.setChunkSize(Integer.valueOf(props.getProperty("chunkSize")));
+        session.setTotalChunks(Integer.valueOf(props.getProperty("totalChunks")));
+        session.setDescription(props.getProperty("description"));
+        session.setIsPublic(Boolean.valueOf(props.getProperty("isPublic")));
+        session.setCreatedAt(LocalDateTime.parse(props.getProperty("createdAt")));
+        session.setExpiresAt(LocalDateTime.parse(props.getProperty("expiresAt")));
+        return session;
+    }
+
+    private void deleteQuietly(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除上传会话文件失败 path={}", path);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("删除上传会话目录失败 dir={}", dir, e);
+        }
+    }
+}
@@ -8,7 +8,7 @@ package com.tiqs.edusystemloader;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "cloud.download.signing-secret=test-download-signing-secret-0123456789")
 class EduSystemLoaderApplicationTests {
 
     @Test